@@ -2,6 +2,7 @@ package com.nbicocchi.publisher.config;
 
 import org.springframework.amqp.core.*;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -14,4 +15,18 @@ public class RabbitConfig {
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
     }
+
+    // Same declarations as the subscribers, so that whoever starts first creates them
+
+    @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+    public CustomExchange hashExchange() {
+        return new CustomExchange(exchangeName + ".hash", "x-consistent-hash");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+    public Binding hashExchangeBinding(CustomExchange hashExchange, TopicExchange exchange) {
+        return BindingBuilder.bind(hashExchange).to(exchange).with("#");
+    }
 }
@@ -1,29 +1,213 @@
 package com.nbicocchi.publisher.events;
 
-import com.nbicocchi.publisher.config.RabbitConfig;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.stereotype.Service;
-
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes messages asynchronously with correlated publisher confirms.
+ * <p>
+ * At most maxInFlight messages may be unconfirmed at once: callers block in
+ * sendMessage for up to sendTimeout when the window is full. A single thread
+ * publishes queued messages in batches of up to batchSize over one channel.
+ * Nacked messages go back to the queue until they have been tried
+ * maxAttempts times. Unroutable (returned) messages fail straight away.
+ * <p>
+ * A retried message goes behind whatever was queued meanwhile, so it may
+ * reach the broker after later messages with the same routing key: the
+ * broker only sees messages in send order when none of them is nacked.
+ */
+@Log4j2
 @Component
 public class MessageSender {
+    private record PendingMessage(String message, String routingKey, long createdAt, int attempt,
+                                  CompletableFuture<Void> done) {
+        PendingMessage retry() {
+            return new PendingMessage(message, routingKey, createdAt, attempt + 1, done);
+        }
+    }
+
     private final RabbitTemplate rabbitTemplate;
+    private final String exchangeName;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration sendTimeout;
+    private final Semaphore window;
+    // Never holds more than maxInFlight messages, the window bounds it
+    private final BlockingQueue<PendingMessage> queue = new LinkedBlockingQueue<>();
+    private final Thread publisher;
+    private volatile boolean running = true;
 
-    @Value("${EXCHANGE_NAME}")
-    private String exchangeName;
+    private final Timer confirmLatency;
+    private final Counter acked;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter returned;
+    private final Counter rejected;
 
-    public MessageSender(RabbitTemplate rabbitTemplate) {
+    public MessageSender(RabbitTemplate rabbitTemplate,
+                         MeterRegistry registry,
+                         @Value("${EXCHANGE_NAME}") String exchangeName,
+                         @Value("${publisher.max-in-flight}") int maxInFlight,
+                         @Value("${publisher.batch-size}") int batchSize,
+                         @Value("${publisher.max-attempts}") int maxAttempts,
+                         @Value("${publisher.send-timeout}") Duration sendTimeout) {
         this.rabbitTemplate = rabbitTemplate;
+        this.exchangeName = exchangeName;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.sendTimeout = sendTimeout;
+        this.window = new Semaphore(maxInFlight);
+
+        this.confirmLatency = Timer.builder("publisher.confirm.latency")
+                .description("Time from sendMessage to the final broker ack, retries included")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.acked = messages(registry, "acked");
+        this.retried = messages(registry, "retried");
+        this.failed = messages(registry, "failed");
+        this.returned = messages(registry, "returned");
+        this.rejected = messages(registry, "rejected");
+        registry.gauge("publisher.in.flight", window, w -> maxInFlight - w.availablePermits());
+
+        this.publisher = new Thread(this::publish, "amqp-publisher");
+        this.publisher.start();
+    }
+
+    private static Counter messages(MeterRegistry registry, String result) {
+        return Counter.builder("publisher.messages").tag("result", result).register(registry);
+    }
+
+    /**
+     * @return completes when the broker confirms the message, or exceptionally
+     * when it is rejected, returned or nacked maxAttempts times
+     */
+    public CompletableFuture<Void> sendMessage(String message, String routingKey) {
+        try {
+            if (!window.tryAcquire(sendTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(
+                        new AmqpException(maxInFlight + " messages are already waiting for a confirm"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        PendingMessage pending = new PendingMessage(message, routingKey, System.nanoTime(), 1, new CompletableFuture<>());
+        queue.add(pending);
+        return pending.done();
+    }
+
+    private void publish() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                publishBatch(batch);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            batch.clear();
+        }
+    }
+
+    private void publishBatch(List<PendingMessage> batch) {
+        List<CorrelationData> correlations = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            CorrelationData correlation = new CorrelationData();
+            correlation.getFuture().whenComplete((confirm, error) -> confirmed(pending, correlation, confirm, error));
+            correlations.add(correlation);
+        }
+        try {
+            // One channel for the whole batch instead of a checkout per message
+            rabbitTemplate.invoke(operations -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    PendingMessage pending = batch.get(i);
+                    operations.convertAndSend(exchangeName, pending.routingKey(), pending.message(), correlations.get(i));
+                }
+                return null;
+            });
+        } catch (AmqpException e) {
+            log.warn("Publishing {} messages failed: {}", batch.size(), e.getMessage());
+            // Messages the broker already confirmed keep their outcome, the first completion wins
+            CorrelationData.Confirm nack = new CorrelationData.Confirm(false, e.getMessage());
+            correlations.forEach(correlation -> correlation.getFuture().complete(nack));
+        }
+    }
+
+    private void confirmed(PendingMessage pending, CorrelationData correlation,
+                           CorrelationData.Confirm confirm, Throwable error) {
+        if (correlation.getReturned() != null) {
+            // The broker acks returned messages too, but no queue got them: retrying would not help
+            returned.increment();
+            settle(pending, new AmqpException("Unroutable message: " + correlation.getReturned().getReplyText()));
+        } else if (error == null && confirm.isAck()) {
+            acked.increment();
+            confirmLatency.record(System.nanoTime() - pending.createdAt(), TimeUnit.NANOSECONDS);
+            settle(pending, null);
+        } else if (pending.attempt() < maxAttempts && requeue(pending.retry())) {
+            retried.increment();
+        } else {
+            failed.increment();
+            String reason = error != null ? error.getMessage() : confirm.getReason();
+            log.error("Giving up on a message to {} after {} attempts: {}", pending.routingKey(), pending.attempt(), reason);
+            settle(pending, new AmqpException("Message nacked: " + reason));
+        }
+    }
+
+    /**
+     * @return false once close() has stopped the publisher, which would never send the message
+     */
+    private synchronized boolean requeue(PendingMessage pending) {
+        if (!running) {
+            return false;
+        }
+        // Added before running turns false, so the publisher drains it before exiting
+        queue.add(pending);
+        return true;
+    }
+
+    private void settle(PendingMessage pending, Exception error) {
+        window.release();
+        if (error == null) {
+            pending.done().complete(null);
+        } else {
+            pending.done().completeExceptionally(error);
+        }
     }
 
-    public void sendMessage(String message, String routingKey) {
-        rabbitTemplate.convertAndSend(
-                exchangeName,   // ora variabile, non più costante
-                routingKey,
-                message
-        );
+    @PreDestroy
+    public void close() throws InterruptedException {
+        // Taking the whole window stops new sends and waits for outstanding confirms (and their retries)
+        if (!window.tryAcquire(maxInFlight, sendTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+            log.warn("{} messages still unconfirmed at shutdown", maxInFlight - window.availablePermits());
+        }
+        synchronized (this) {
+            running = false;
+        }
+        publisher.join();
     }
 }
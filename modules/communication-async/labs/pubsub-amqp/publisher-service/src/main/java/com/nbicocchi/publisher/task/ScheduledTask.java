@@ -3,8 +3,8 @@ package com.nbicocchi.publisher.task;
 import com.nbicocchi.publisher.events.Event;
 import com.nbicocchi.publisher.events.MessageSender;
 import com.nbicocchi.publisher.events.SpecificEvent;
-import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -13,12 +13,13 @@ import java.util.random.RandomGenerator;
 
 @Log4j2
 @Component
-@AllArgsConstructor
 public class ScheduledTask {
 
     private final MessageSender messageSender;
+    private final int messagesPerTick;
+    private final boolean consistentHash;
+    private final int shards;
     private final RandomGenerator randomGenerator = RandomGenerator.getDefault();
-    private final int SHARDS = 3;
 
     private final List<String> actions = List.of(
             "money.account",
@@ -39,17 +40,36 @@ public class ScheduledTask {
             "BA-1010-2025"
     );
 
+    public ScheduledTask(MessageSender messageSender,
+                         @Value("${publisher.messages-per-tick}") int messagesPerTick,
+                         @Value("${sharding.mode}") String shardingMode,
+                         @Value("${sharding.shards}") int shards) {
+        this.messageSender = messageSender;
+        this.messagesPerTick = messagesPerTick;
+        this.consistentHash = "consistent-hash".equals(shardingMode);
+        this.shards = shards;
+    }
+
     private String routingKey(String accountId, String action) {
         // sharding on action
         //return action;
 
-        // sharding on accountid
-        int shard = Math.floorMod(accountId.hashCode(), SHARDS);
+        // sharding on accountid, the consistent-hash exchange hashes it on its own
+        if (consistentHash) {
+            return accountId;
+        }
+        int shard = Math.floorMod(accountId.hashCode(), shards);
         return "shard-" + shard;
     }
 
     @Scheduled(fixedRate = 100)
-    public void randomMessage() {
+    public void randomMessages() {
+        for (int i = 0; i < messagesPerTick; i++) {
+            randomMessage();
+        }
+    }
+
+    private void randomMessage() {
 
         String accountId = accounts.get(randomGenerator.nextInt(accounts.size()));
         String action = actions.get(randomGenerator.nextInt(actions.size()));
@@ -63,6 +83,11 @@ public class ScheduledTask {
         String routingKey = routingKey(accountId, action);
         log.info("accountId: {} action: {} routingKey: {}", accountId, action, routingKey);
 
-        messageSender.sendMessage(event.toString(), routingKey);
+        messageSender.sendMessage(event.toString(), routingKey)
+                .whenComplete((ok, error) -> {
+                    if (error != null) {
+                        log.warn("accountId: {} lost: {}", accountId, error.getMessage());
+                    }
+                });
     }
 }
\ No newline at end of file
@@ -4,10 +4,14 @@ import lombok.extern.log4j.Log4j2;
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.beans.factory.annotation.Value;
 
+import java.time.Duration;
+import java.util.List;
+
 @Log4j2
 @Configuration
 public class RabbitConfig {
@@ -21,6 +25,27 @@ public class RabbitConfig {
     @Value("${EXCHANGE_NAME}")
     private String exchangeName;
 
+    @Value("${subscriber.prefetch}")
+    private int prefetch;
+
+    @Value("${subscriber.concurrency}")
+    private int concurrency;
+
+    @Value("${subscriber.batch.size}")
+    private int batchSize;
+
+    @Value("${subscriber.batch.timeout}")
+    private Duration batchTimeout;
+
+    @Value("${sharding.mode}")
+    private String shardingMode;
+
+    @Value("${sharding.virtual-nodes}")
+    private int virtualNodes;
+
+    @Value("${sharding.drain-queues}")
+    private List<String> drainQueues;
+
     // ---------------- EXCHANGE ----------------
 
     @Bean
@@ -29,6 +54,23 @@ public class RabbitConfig {
         return new TopicExchange(exchangeName);
     }
 
+    // ---------------- CONSISTENT-HASH EXCHANGE ----------------
+
+    @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+    public CustomExchange hashExchange() {
+        String name = exchangeName + ".hash";
+        log.info("Creating Consistent-Hash Exchange: {}", name);
+        return new CustomExchange(name, "x-consistent-hash");
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+    public Binding hashExchangeBinding(CustomExchange hashExchange, TopicExchange exchange) {
+        // Everything published to the main exchange is spread over the shards by routing key (the accountId)
+        return BindingBuilder.bind(hashExchange).to(exchange).with("#");
+    }
+
     // ---------------- MAIN QUEUE ----------------
 
     @Bean
@@ -36,10 +78,15 @@ public class RabbitConfig {
 
         log.info("Creating Queue: {}", queueName);
 
-        return QueueBuilder.durable(queueName)
+        QueueBuilder builder = QueueBuilder.durable(queueName)
                 .withArgument("x-dead-letter-exchange", dlxExchange().getName())
-                .withArgument("x-dead-letter-routing-key", dlqRoutingKey())
-                .build();
+                .withArgument("x-dead-letter-routing-key", dlqRoutingKey());
+
+        if (isConsistentHash()) {
+            // Any number of instances may consume a shard, only one at a time gets messages: accounts keep the order the broker received them in
+            builder.singleActiveConsumer();
+        }
+        return builder.build();
     }
 
     // ---------------- DLQ EXCHANGE ----------------
@@ -82,6 +129,7 @@ public class RabbitConfig {
     // ---------------- MAIN BINDING ----------------
 
     @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "modulo", matchIfMissing = true)
     public Binding binding(Queue queue, TopicExchange exchange) {
 
         Binding binding = BindingBuilder
@@ -97,6 +145,34 @@ public class RabbitConfig {
         return binding;
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+    public Binding hashBinding(Queue queue, CustomExchange hashExchange) {
+
+        // The binding key is the weight: how many points the queue takes on the hash ring
+        Binding binding = BindingBuilder
+                .bind(queue)
+                .to(hashExchange)
+                .with(String.valueOf(virtualNodes))
+                .noargs();
+
+        log.info("Creating Binding:");
+        log.info("  Queue         : {}", queue.getName());
+        log.info("  Exchange      : {}", hashExchange.getName());
+        log.info("  Virtual Nodes : {}", virtualNodes);
+
+        return binding;
+    }
+
+    private boolean isConsistentHash() {
+        return "consistent-hash".equals(shardingMode);
+    }
+
+    // A new shard must not consume before the shards it takes accounts from have drained, see ShardRebalancer
+    private boolean autoStartup() {
+        return !isConsistentHash() || drainQueues.isEmpty();
+    }
+
     // ---------------- LISTENER FACTORY ----------------
 
     @Bean
@@ -107,10 +183,42 @@ public class RabbitConfig {
                 new SimpleRabbitListenerContainerFactory();
 
         factory.setConnectionFactory(connectionFactory);
-        factory.setPrefetchCount(1); // fair dispatch
+        factory.setPrefetchCount(prefetch); // 1 = fair dispatch
+        factory.setConcurrentConsumers(concurrency);
         factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setAutoStartup(autoStartup());
+
+        log.info("RabbitListenerContainerFactory configured: prefetch={}, concurrency={}, manual-ack",
+                prefetch, concurrency);
+
+        return factory;
+    }
+
+    // ---------------- BATCH LISTENER FACTORY ----------------
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            ConnectionFactory connectionFactory) {
 
-        log.info("RabbitListenerContainerFactory configured: prefetch=1, manual-ack");
+        SimpleRabbitListenerContainerFactory factory =
+                new SimpleRabbitListenerContainerFactory();
+
+        // A batch can only fill up if the broker may push at least that many messages
+        int batchPrefetch = Math.max(prefetch, batchSize);
+
+        factory.setConnectionFactory(connectionFactory);
+        factory.setPrefetchCount(batchPrefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setAutoStartup(autoStartup());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // A partial batch is handed over once no message arrives for this long
+        factory.setReceiveTimeout(batchTimeout.toMillis());
+
+        log.info("BatchListenerContainerFactory configured: prefetch={}, concurrency={}, batch={}, timeout={}, manual-ack",
+                batchPrefetch, concurrency, batchSize, batchTimeout);
 
         return factory;
     }
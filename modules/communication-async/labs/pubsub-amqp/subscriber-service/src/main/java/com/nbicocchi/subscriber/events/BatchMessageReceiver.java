@@ -0,0 +1,54 @@
+package com.nbicocchi.subscriber.events;
+
+import com.rabbitmq.client.Channel;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Receives up to subscriber.batch.size messages at a time and settles them
+ * with as few round-trips as possible. Failed messages are nacked one by one
+ * and go to the DLQ as in single mode. A single multiple-ack on the highest
+ * successful tag then acks everything before it that was not nacked.
+ */
+@Log4j2
+@Service
+@ConditionalOnProperty(name = "subscriber.mode", havingValue = "batch")
+public class BatchMessageReceiver {
+    private final EventProcessor eventProcessor;
+
+    public BatchMessageReceiver(EventProcessor eventProcessor) {
+        this.eventProcessor = eventProcessor;
+    }
+
+    @RabbitListener(
+            queues = "${QUEUE_NAME}",
+            containerFactory = "batchListenerContainerFactory"
+    )
+    public void listenBatch(List<Message> messages, Channel channel) throws IOException {
+        // Delivery tags grow within a channel, so the last success is the highest
+        long lastSuccess = -1;
+
+        for (Message msg : messages) {
+            long tag = msg.getMessageProperties().getDeliveryTag();
+            try {
+                eventProcessor.process(new String(msg.getBody(), StandardCharsets.UTF_8));
+                lastSuccess = tag;
+            } catch (Exception e) {
+                // Not requeued: the dead-letter exchange routes it to the DLQ
+                log.warn("Processing message {} failed, sending it to the DLQ", tag, e);
+                channel.basicNack(tag, false, false);
+            }
+        }
+
+        if (lastSuccess >= 0) {
+            channel.basicAck(lastSuccess, true);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.nbicocchi.subscriber.events;
+
+import org.springframework.stereotype.Component;
+
+@Component
+public class EventProcessor {
+
+    /**
+     * Does the work for one message, failing at random 5% of the time.
+     */
+    public void process(String message) throws InterruptedException {
+        System.out.print("Received: " + message);
+
+        // work
+        Thread.sleep(250);
+
+        // simulazione errore random
+        if (Math.random() < 0.05) {
+            throw new RuntimeException("Random failure");
+        }
+
+        System.out.println("[OK]");
+    }
+}
@@ -3,14 +3,19 @@ package com.nbicocchi.subscriber.events;
 import com.rabbitmq.client.Channel;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
 
 @Service
+@ConditionalOnProperty(name = "subscriber.mode", havingValue = "single", matchIfMissing = true)
 public class MessageReceiver {
+    private final EventProcessor eventProcessor;
+
+    public MessageReceiver(EventProcessor eventProcessor) {
+        this.eventProcessor = eventProcessor;
+    }
 
     @RabbitListener(
             queues = "${QUEUE_NAME}",
@@ -28,17 +33,7 @@ public class MessageReceiver {
         long tag = msg.getMessageProperties().getDeliveryTag();
 
         try {
-            System.out.print("Received: " + message);
-
-            // work
-            Thread.sleep(250);
-
-            // simulazione errore random
-            if (Math.random() < 0.05) {
-                throw new RuntimeException("Random failure");
-            }
-
-            System.out.println("[OK]");
+            eventProcessor.process(message);
             channel.basicAck(tag, false);
 
         } catch (Exception e) {
@@ -48,4 +43,4 @@ public class MessageReceiver {
             channel.basicNack(tag, false, false);
         }
     }
-}
\ No newline at end of file
+}
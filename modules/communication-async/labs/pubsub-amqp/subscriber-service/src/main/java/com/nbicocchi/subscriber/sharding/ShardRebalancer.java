@@ -0,0 +1,136 @@
+package com.nbicocchi.subscriber.sharding;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Adds a shard to the consistent-hash ring without breaking per-account
+ * ordering.
+ * <p>
+ * Binding a new queue moves about 1/N of the accounts to it. Their older
+ * messages may still sit in the queues they came from. So the new shard
+ * binds its queue straight away but does not consume until every queue in
+ * sharding.drain-queues has no ready messages. It then waits
+ * sharding.drain-grace more for the messages those consumers have already
+ * fetched. The wait runs on its own thread, so startup is not held up, and
+ * the health indicator reports OUT_OF_SERVICE meanwhile. If the queues are
+ * not drained after sharding.drain-timeout, listeners start anyway only when
+ * sharding.start-on-drain-timeout is set; otherwise they stay stopped and
+ * health reports DOWN. With no drain-queues (the first shards) listeners
+ * start as usual.
+ * <p>
+ * To remove a shard, stop the publisher, unbind the queue and let its
+ * consumer empty it before publishing again. Otherwise its accounts may be
+ * handled out of order on the shards that take them over.
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "sharding.mode", havingValue = "consistent-hash")
+public class ShardRebalancer implements ApplicationRunner, HealthIndicator {
+    private enum State { DRAINING, STARTED, TIMED_OUT }
+
+    private final AmqpAdmin amqpAdmin;
+    private final RabbitListenerEndpointRegistry registry;
+    private final List<String> drainQueues;
+    private final Duration drainGrace;
+    private final Duration drainTimeout;
+    private final boolean startOnDrainTimeout;
+    private final Thread rebalancer;
+    private volatile State state;
+
+    public ShardRebalancer(AmqpAdmin amqpAdmin,
+                           RabbitListenerEndpointRegistry registry,
+                           @Value("${sharding.drain-queues}") List<String> drainQueues,
+                           @Value("${sharding.drain-grace}") Duration drainGrace,
+                           @Value("${sharding.drain-timeout}") Duration drainTimeout,
+                           @Value("${sharding.start-on-drain-timeout}") boolean startOnDrainTimeout) {
+        this.amqpAdmin = amqpAdmin;
+        this.registry = registry;
+        this.drainQueues = drainQueues;
+        this.drainGrace = drainGrace;
+        this.drainTimeout = drainTimeout;
+        this.startOnDrainTimeout = startOnDrainTimeout;
+        this.rebalancer = new Thread(this::awaitDrain, "shard-rebalancer");
+        this.rebalancer.setDaemon(true);
+        this.state = drainQueues.isEmpty() ? State.STARTED : State.DRAINING;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (state == State.DRAINING) {
+            rebalancer.start();
+        }
+    }
+
+    private void awaitDrain() {
+        try {
+            if (!drained()) {
+                if (!startOnDrainTimeout) {
+                    log.error("Queues {} not drained after {}, listeners stay stopped", drainQueues, drainTimeout);
+                    state = State.TIMED_OUT;
+                    return;
+                }
+                log.warn("Queues {} not drained after {}, starting anyway", drainQueues, drainTimeout);
+            }
+            Thread.sleep(drainGrace.toMillis());
+        } catch (InterruptedException e) {
+            // Shutting down before the shard ever started
+            return;
+        }
+
+        log.info("Starting listeners");
+        registry.getListenerContainers().forEach(MessageListenerContainer::start);
+        state = State.STARTED;
+    }
+
+    /**
+     * @return false if sharding.drain-timeout expired with messages still ready
+     */
+    private boolean drained() throws InterruptedException {
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (String queue : drainQueues) {
+            while (true) {
+                QueueInformation info = amqpAdmin.getQueueInfo(queue);
+                if (info == null || info.getMessageCount() == 0) {
+                    log.info("Queue {} drained", queue);
+                    break;
+                }
+                if (System.nanoTime() > deadline) {
+                    log.warn("Queue {} still holds {} messages", queue, info.getMessageCount());
+                    return false;
+                }
+                log.info("Waiting for queue {} to drain: {} messages left", queue, info.getMessageCount());
+                Thread.sleep(1000);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Health health() {
+        return switch (state) {
+            case STARTED -> Health.up().build();
+            case DRAINING -> Health.outOfService().withDetail("drainQueues", drainQueues).build();
+            case TIMED_OUT -> Health.down().withDetail("drainQueues", drainQueues).withDetail("drainTimeout", drainTimeout).build();
+        };
+    }
+
+    @PreDestroy
+    public void close() {
+        rebalancer.interrupt();
+    }
+}
@@ -0,0 +1,31 @@
+package com.nbicocchi.math.config;
+
+import com.nbicocchi.math.service.FactorizationCache;
+import com.nbicocchi.math.service.SmallestPrimeFactorTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class MathConfig {
+
+    @Bean
+    public SmallestPrimeFactorTable smallestPrimeFactorTable(@Value("${math.spf.limit}") long limit,
+                                                             @Value("${math.spf.file}") String file) {
+        return new SmallestPrimeFactorTable(limit, file.isBlank() ? null : Path.of(file));
+    }
+
+    @Bean
+    public FactorizationCache factorizationCache(@Value("${math.cache.enabled}") boolean enabled,
+                                                 @Value("${math.cache.max-bytes}") long maxBytes,
+                                                 MeterRegistry meterRegistry) {
+        FactorizationCache cache = new FactorizationCache(enabled, maxBytes);
+        // Exposes cache_gets_total{result="hit|miss"}, cache_evictions_total and cache_size
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.nativeCache(), "factorizations");
+        return cache;
+    }
+}
@@ -1,26 +1,69 @@
 package com.nbicocchi.math.service;
 
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpServerErrorException;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.random.RandomGenerator;
 
 @Service
 public class MathService {
+    private final SmallestPrimeFactorTable spfTable;
+    private final PollardRhoFactorizer pollardRho = new PollardRhoFactorizer();
+    private final FactorizationCache cache;
+    private final FactorizationAlgorithm algorithm;
+
+    public MathService(SmallestPrimeFactorTable spfTable,
+                       FactorizationCache cache,
+                       @Value("${math.algorithm}") FactorizationAlgorithm algorithm) {
+        this.spfTable = spfTable;
+        this.cache = cache;
+        this.algorithm = algorithm;
+    }
 
     public List<Long> findPrimeDivisors(long n) {
-        List<Long> primes = new ArrayList<>();
-        while (n % 2 == 0) { primes.add(2L); n /= 2; }
-        for (long i = 3; i * i <= n; i += 2) {
-            while (n % i == 0) { primes.add(i); n /= i; }
+        return Arrays.stream(factorize(n)).boxed().toList();
+    }
+
+    /**
+     * Factorizes n with the configured algorithm, going through the cache.
+     * The returned array may be shared with other callers and must not be modified.
+     */
+    public long[] factorize(long n) {
+        return cache.get(n, number -> factorize(number, algorithm));
+    }
+
+    public long[] factorize(long n, FactorizationAlgorithm algorithm) {
+        return switch (algorithm) {
+            case TRIAL_DIVISION -> trialDivision(n);
+            case POLLARD_RHO -> pollardRho.factorize(n);
+        };
+    }
+
+    private long[] trialDivision(long n) {
+        if (n < 2) {
+            return new long[0];
+        }
+        // A long has at most 63 prime factors
+        long[] primes = new long[Long.SIZE];
+        int count = 0;
+        while (n % 2 == 0) { primes[count++] = 2; n /= 2; }
+        // Trial division only while n is above the range of the table
+        for (long i = 3; n >= spfTable.limit() && i * i <= n; i += 2) {
+            while (n % i == 0) { primes[count++] = i; n /= i; }
+        }
+        if (n >= spfTable.limit()) {
+            primes[count++] = n;
+            return Arrays.copyOf(primes, count);
+        }
+        while (n > 1) {
+            long p = spfTable.smallestFactor(n);
+            primes[count++] = p;
+            n /= p;
         }
-        if (n > 2) primes.add(n);
-        return primes;
+        return Arrays.copyOf(primes, count);
     }
 
     public Long calculateMCD(List<Long> aFactors, List<Long> bFactors) {
@@ -36,7 +79,7 @@ public class MathService {
         return mcd;
     }
 
-    private Map<Long, Long> countFactors(List<Long> factors) {
+    Map<Long, Long> countFactors(List<Long> factors) {
         Map<Long, Long> map = new HashMap<>();
         for (Long factor : factors) map.put(factor, map.getOrDefault(factor, 0L) + 1);
         return map;
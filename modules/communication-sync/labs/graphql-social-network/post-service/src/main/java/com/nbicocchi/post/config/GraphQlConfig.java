@@ -0,0 +1,42 @@
+package com.nbicocchi.post.config;
+
+import graphql.analysis.FieldComplexityCalculator;
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import graphql.schema.GraphQLTypeUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GraphQlConfig {
+
+    /**
+     * Rejects queries nested deeper than maxDepth before they run.
+     */
+    @Bean
+    public MaxQueryDepthInstrumentation maxQueryDepthInstrumentation(
+            @Value("${app.graphql.limits.max-depth}") int maxDepth) {
+        return new MaxQueryDepthInstrumentation(maxDepth);
+    }
+
+    /**
+     * Rejects queries whose estimated cost exceeds maxComplexity before they run.
+     * Every field costs 1, and what is selected below a list field is counted
+     * listSize times, so cost grows with the rows a query can fan out to.
+     * Introspection is free, otherwise GraphiQL could not load the schema.
+     */
+    @Bean
+    public MaxQueryComplexityInstrumentation maxQueryComplexityInstrumentation(
+            @Value("${app.graphql.limits.max-complexity}") int maxComplexity,
+            @Value("${app.graphql.limits.list-size}") int listSize) {
+        FieldComplexityCalculator calculator = (environment, childComplexity) -> {
+            if (environment.getField().getName().startsWith("__")) {
+                return 0;
+            }
+            boolean list = GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(environment.getFieldDefinition().getType()));
+            return 1 + (list ? listSize : 1) * childComplexity;
+        };
+        return new MaxQueryComplexityInstrumentation(maxComplexity, calculator);
+    }
+}
@@ -0,0 +1,87 @@
+package com.nbicocchi.post.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionResult;
+import graphql.language.AstPrinter;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the results of queries, keyed by the query with formatting stripped,
+ * the operation name and the variables. Any mutation empties the cache. A
+ * query that overlaps a mutation is not cached, because it may have read
+ * data from before the change.
+ */
+@Component
+public class ResponseCacheInterceptor implements WebGraphQlInterceptor {
+    private final Cache<String, ExecutionResult> cache;
+    // Bumped when a mutation starts and when it ends
+    private final AtomicLong generation = new AtomicLong();
+
+    public ResponseCacheInterceptor(
+            @Value("${app.graphql.cache.max-size}") long maxSize,
+            @Value("${app.graphql.cache.ttl}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        Document document;
+        try {
+            document = Parser.parse(request.getDocument());
+        } catch (InvalidSyntaxException e) {
+            // Let execution report the error
+            return chain.next(request);
+        }
+        OperationDefinition.Operation operation = document.getDefinitionsOfType(OperationDefinition.class).stream()
+                .filter(o -> request.getOperationName() == null || request.getOperationName().equals(o.getName()))
+                .map(OperationDefinition::getOperation)
+                .findFirst()
+                .orElse(null);
+
+        if (operation == OperationDefinition.Operation.MUTATION) {
+            generation.incrementAndGet();
+            return chain.next(request).doFinally(signal -> {
+                cache.invalidateAll();
+                generation.incrementAndGet();
+            });
+        }
+        if (operation != OperationDefinition.Operation.QUERY) {
+            return chain.next(request);
+        }
+
+        String key = AstPrinter.printAstCompact(document) + '\n'
+                + Objects.toString(request.getOperationName(), "") + '\n'
+                + new TreeMap<>(request.getVariables());
+        ExecutionResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(new WebGraphQlResponse(
+                    new DefaultExecutionGraphQlResponse(request.toExecutionInput(), cached)));
+        }
+
+        long startGeneration = generation.get();
+        return chain.next(request).doOnNext(response -> {
+            if (response.isValid() && response.getErrors().isEmpty() && generation.get() == startGeneration) {
+                cache.put(key, response.getExecutionResult());
+            }
+        });
+    }
+}
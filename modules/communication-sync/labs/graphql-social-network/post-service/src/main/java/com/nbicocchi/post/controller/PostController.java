@@ -42,6 +42,13 @@ public class PostController {
                 .collect(Collectors.toList());
     }
 
+    @QueryMapping
+    public List<PostDTO> postsByUsers(@Argument List<String> userUUIDs) {
+        return postRepository.findByUserUUIDIn(userUUIDs).stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+    }
+
     // -------------------------------
     // Mutations
     // -------------------------------
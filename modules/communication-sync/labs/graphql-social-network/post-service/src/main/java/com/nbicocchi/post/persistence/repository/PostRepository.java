@@ -5,6 +5,7 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,6 +14,9 @@ public interface PostRepository extends CrudRepository<Post, Long> {
     // Find all posts by a given user
     Iterable<Post> findByUserUUID(String userUUID);
 
+    // Find all posts of several users at once (for batch loading)
+    List<Post> findByUserUUIDIn(Collection<String> userUUIDs);
+
     // Find posts by user and timestamp (for deletion)
     List<Post> findByUserUUIDAndTimestamp(String userUUID, LocalDateTime timestamp);
 }
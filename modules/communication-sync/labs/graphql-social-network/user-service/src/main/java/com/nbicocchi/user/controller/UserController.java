@@ -7,6 +7,7 @@ import com.nbicocchi.user.integration.PostIntegration;
 import com.nbicocchi.user.persistence.model.UserModel;
 import com.nbicocchi.user.persistence.repository.UserRepository;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.http.HttpStatus;
@@ -45,14 +46,20 @@ public class UserController {
         UserModel userModel = userRepository.findByUserUUID(userUUID)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
-        UserDTO userDTO = mapToDTO(userModel);
-
-        Iterable<PostDTO> posts = postIntegration.findbyUserUUID(userUUID);
-        Set<PostDTO> postSet = StreamSupport.stream(posts.spliterator(), false)
-                .collect(Collectors.toSet());
+        return mapToDTO(userModel);
+    }
 
-        userDTO.setPosts(postSet);
-        return userDTO;
+    // -------------------------------
+    // Fields
+    // -------------------------------
+    // Resolves posts for every User in the response with a single call to post-service
+    @BatchMapping(typeName = "User")
+    public List<List<PostDTO>> posts(List<UserDTO> users) {
+        Map<String, List<PostDTO>> postsByUser = postIntegration.findByUserUUIDs(
+                users.stream().map(UserDTO::getUserUUID).distinct().toList());
+        return users.stream()
+                .map(user -> postsByUser.getOrDefault(user.getUserUUID(), List.of()))
+                .toList();
     }
 
     // -------------------------------
@@ -88,13 +95,11 @@ public class UserController {
     // Mapping helpers
     // -------------------------------
     private UserDTO mapToDTO(UserModel user) {
-        UserDTO dto = new UserDTO(
+        return new UserDTO(
                 user.getUserUUID(),
                 user.getNickname(),
                 user.getBirthDate()
         );
-        dto.setPosts(new HashSet<>()); // Initialize posts as empty
-        return dto;
     }
 
     private UserModel mapToModel(UserDTOInput dto) {
@@ -8,30 +8,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-
-import static org.springframework.http.MediaType.APPLICATION_JSON;
+import java.util.stream.Collectors;
 
 @Component
 public class PostIntegration {
-    String postServiceHost;
-    int postServicePort;
+    private final RestClient restClient;
 
     public PostIntegration(
             @Value("${app.post-service.host}") String postServiceHost,
             @Value("${app.post-service.port}") int postServicePort) {
-        this.postServiceHost = postServiceHost;
-        this.postServicePort = postServicePort;
+        // One client (and connection pool) for all calls
+        this.restClient = RestClient.builder()
+                .baseUrl("http://" + postServiceHost + ":" + postServicePort + "/graphql")
+                .build();
     }
 
-    public Iterable<PostDTO> findbyUserUUID(String userUUID) {
-        String url = "http://" + postServiceHost + ":" + postServicePort + "/graphql";
-        RestClient restClient = RestClient.builder().build();
-
+    /**
+     * Fetches the posts of all the given users with a single request.
+     *
+     * @return posts grouped by userUUID, users without posts are missing
+     */
+    public Map<String, List<PostDTO>> findByUserUUIDs(Collection<String> userUUIDs) {
         String query = """
-            query($userUUID: String!) {
-              postsByUser(userUUID: $userUUID) {
+            query($userUUIDs: [String!]!) {
+              postsByUsers(userUUIDs: $userUUIDs) {
                 userUUID
                 timestamp
                 content
@@ -41,28 +44,24 @@ public class PostIntegration {
 
         Map<String, Object> requestBody = Map.of(
                 "query", query,
-                "variables", Map.of("userUUID", userUUID)
+                "variables", Map.of("userUUIDs", userUUIDs)
         );
 
         Map<String, Object> response = restClient
                 .post()
-                .uri(url)
                 .body(requestBody)
                 .retrieve()
                 .body(new ParameterizedTypeReference<>() {});
 
-        System.out.println(response);
-
         Map<String, Object> data = (Map<String, Object>) response.get("data");
-        List<Map<String, Object>> posts = (List<Map<String, Object>>) data.get("postsByUser");
+        List<Map<String, Object>> posts = (List<Map<String, Object>>) data.get("postsByUsers");
 
-        List<PostDTO> postDTOList = posts.stream()
+        return posts.stream()
                 .map(p -> new PostDTO(
                         (String) p.get("userUUID"),
                         LocalDateTime.parse((String) p.get("timestamp")),
                         (String) p.get("content")
-                )).toList();
-
-        return postDTOList; // List<PostDTO> is Iterable<PostDTO>
+                ))
+                .collect(Collectors.groupingBy(PostDTO::getUserUUID));
     }
 }
@@ -0,0 +1,25 @@
+package com.nbicocchi.math.service;
+
+/**
+ * Inputs grouped by how they stress the factorization algorithms. Each class
+ * holds the number to factorize and a companion sharing some of its factors,
+ * used as the second operand of calculateMCD.
+ */
+public enum InputClass {
+    /** The number used by the vegeta load tests, below the range of the sieve table */
+    SMALL(1234L, 5678L),
+    /** Product of two primes near 10^6: trial division runs up to the smaller one */
+    SEMIPRIME(1_000_003L * 1_000_033L, 1_000_003L * 999_983L),
+    /** A prime near 10^12: trial division runs all the way up to its square root */
+    PRIME(1_000_000_000_039L, 2L * 1_000_000_000_039L),
+    /** 2^62: the largest number of factors a positive long can have */
+    POWER_OF_TWO(1L << 62, 3L << 60);
+
+    final long number;
+    final long companion;
+
+    InputClass(long number, long companion) {
+        this.number = number;
+        this.companion = companion;
+    }
+}
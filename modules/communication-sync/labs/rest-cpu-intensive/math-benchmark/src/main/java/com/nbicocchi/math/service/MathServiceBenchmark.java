@@ -0,0 +1,67 @@
+package com.nbicocchi.math.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class MathServiceBenchmark {
+    /** Same value as math.spf.limit in the service configuration */
+    private static final long SPF_LIMIT = 16_777_216L;
+
+    @Param
+    public InputClass input;
+
+    @Param
+    public FactorizationAlgorithm algorithm;
+
+    private MathService mathService;
+    private List<Long> factors;
+    private List<Long> companionFactors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Cache bypassed: every operation measures the algorithm itself
+        mathService = new MathService(new SmallestPrimeFactorTable(SPF_LIMIT, null), new FactorizationCache(false, 0), algorithm);
+        factors = mathService.findPrimeDivisors(input.number);
+        companionFactors = mathService.findPrimeDivisors(input.companion);
+    }
+
+    @Benchmark
+    public List<Long> findPrimeDivisors() {
+        return mathService.findPrimeDivisors(input.number);
+    }
+
+    @Benchmark
+    public long[] factorize() {
+        return mathService.factorize(input.number);
+    }
+
+    @Benchmark
+    public Long calculateMCD() {
+        return mathService.calculateMCD(factors, companionFactors);
+    }
+
+    @Benchmark
+    public Map<Long, Long> countFactors() {
+        return mathService.countFactors(factors);
+    }
+}
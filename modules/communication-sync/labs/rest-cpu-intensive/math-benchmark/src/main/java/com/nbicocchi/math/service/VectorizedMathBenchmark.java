@@ -0,0 +1,68 @@
+package com.nbicocchi.math.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against SIMD code on the batch operations. Numbers are drawn above
+ * the sieve table, where factorization actually runs an algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "--add-modules", "jdk.incubator.vector"})
+public class VectorizedMathBenchmark {
+    private static final long SPF_LIMIT = 16_777_216L;
+    private static final int BLOCK_SIZE = 256;
+
+    @Param({"false", "true"})
+    public boolean vector;
+
+    @Param
+    public FactorizationAlgorithm algorithm;
+
+    private VectorizedMath vectorizedMath;
+    private long[] block;
+    private long[] multiples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MathService mathService = new MathService(new SmallestPrimeFactorTable(SPF_LIMIT, null), new FactorizationCache(false, 0), algorithm);
+        vectorizedMath = new VectorizedMath(mathService, vector, BLOCK_SIZE);
+
+        Random random = new Random(42);
+        block = new long[BLOCK_SIZE];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = random.nextLong(SPF_LIMIT, 1L << 36);
+        }
+        multiples = new long[16 * BLOCK_SIZE];
+        for (int i = 0; i < multiples.length; i++) {
+            multiples[i] = 7919L * random.nextLong(1, 1L << 36);
+        }
+    }
+
+    @Benchmark
+    public long[][] factorizeBlock() {
+        return vectorizedMath.factorize(block);
+    }
+
+    @Benchmark
+    public long gcd() {
+        return vectorizedMath.gcd(multiples);
+    }
+}
@@ -1,18 +1,45 @@
 package com.nbicocchi.math.controller;
 
+import com.nbicocchi.math.service.BatchFactorizationService;
+import com.nbicocchi.math.service.CpuExecutor;
+import com.nbicocchi.math.service.ExecutionMode;
 import com.nbicocchi.math.service.MathService;
-import lombok.AllArgsConstructor;
+import com.nbicocchi.math.service.VectorizedMath;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.log4j.Log4j2;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
 
 @Slf4j
 @RestController
-@AllArgsConstructor
 public class MathController {
     MathService mathService;
+    BatchFactorizationService batchFactorizationService;
+    CpuExecutor cpuExecutor;
+    VectorizedMath vectorizedMath;
+    ExecutionMode executionMode;
+
+    public MathController(MathService mathService,
+                          BatchFactorizationService batchFactorizationService,
+                          CpuExecutor cpuExecutor,
+                          VectorizedMath vectorizedMath,
+                          @Value("${math.execution.mode}") ExecutionMode executionMode) {
+        this.mathService = mathService;
+        this.batchFactorizationService = batchFactorizationService;
+        this.cpuExecutor = cpuExecutor;
+        this.vectorizedMath = vectorizedMath;
+        this.executionMode = executionMode;
+    }
 
     /*
     echo 'GET http://localhost:8080/divisors?number=1234&times=40&email=test@test.com' | vegeta attack -rate=50 -duration=30s | vegeta report
@@ -25,11 +52,54 @@ public class MathController {
 
         log.info(number + " " + times + " " + email);
 
-        List<Long> divisors = null;
-        for (int i = 0; i < times; i++) {
-            divisors = mathService.findPrimeDivisors(number);
-        }
+        Supplier<List<Long>> work = () -> {
+            List<Long> result = null;
+            for (int i = 0; i < times; i++) {
+                result = mathService.findPrimeDivisors(number);
+            }
+            return result;
+        };
 
+        List<Long> divisors = executionMode == ExecutionMode.OFFLOAD ? cpuExecutor.execute(work) : work.get();
         return Map.of("divisors", divisors);
     }
+
+    /*
+    curl -X POST -H 'Content-Type: application/json' -d '[1234, 5678, 1000000007]' http://localhost:8081/divisors/batch
+     */
+    @PostMapping(value = "/divisors/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody searchPrimesBatch(@RequestBody long[] numbers) {
+        log.info("batch of " + numbers.length + " numbers");
+        return out -> batchFactorizationService.factorize(LongStream.of(numbers), out);
+    }
+
+    /*
+    seq 1000000 1100000 | curl -X POST -H 'Content-Type: application/x-ndjson' -T - http://localhost:8081/divisors/batch
+     */
+    @PostMapping(value = "/divisors/batch",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody searchPrimesBatchStream(HttpServletRequest request) {
+        log.info("streamed batch");
+        // Numbers are read one line at a time while earlier results are being written
+        return out -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+            LongStream numbers = reader.lines()
+                    .map(String::strip)
+                    .filter(line -> !line.isEmpty())
+                    .mapToLong(Long::parseLong);
+            batchFactorizationService.factorize(numbers, out);
+        };
+    }
+
+    /*
+    curl -X POST -H 'Content-Type: application/json' -d '[1234, 5678, 9012]' http://localhost:8081/gcd
+     */
+    @PostMapping(value = "/gcd", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Map<String, Object> gcd(@RequestBody long[] numbers) {
+        log.info("gcd of " + numbers.length + " numbers");
+        return Map.of("gcd", vectorizedMath.gcd(numbers));
+    }
 }
\ No newline at end of file
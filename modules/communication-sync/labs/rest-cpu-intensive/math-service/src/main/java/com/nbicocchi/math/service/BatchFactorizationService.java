@@ -0,0 +1,105 @@
+package com.nbicocchi.math.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.LongStream;
+
+/**
+ * Factorizes sequences of numbers on a shared work-stealing pool and writes
+ * the results as NDJSON in input order. Numbers are grouped in blocks sized
+ * for the vector kernels (single numbers when they are disabled), and up to
+ * inFlight numbers are computed ahead of the one being written, so memory
+ * stays bounded whatever the size of the batch and the response starts before
+ * the input has been read.
+ */
+@Service
+public class BatchFactorizationService {
+    private final VectorizedMath vectorizedMath;
+    private final ForkJoinPool factorizationPool;
+    private final int inFlight;
+
+    public BatchFactorizationService(VectorizedMath vectorizedMath,
+                                     ForkJoinPool factorizationPool,
+                                     @Value("${math.batch.in-flight}") int inFlight) {
+        this.vectorizedMath = vectorizedMath;
+        this.factorizationPool = factorizationPool;
+        this.inFlight = inFlight;
+    }
+
+    public void factorize(LongStream numbers, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        Deque<ForkJoinTask<String>> pending = new ArrayDeque<>();
+        int blockSize = vectorizedMath.blockSize();
+        int maxPending = Math.max(1, inFlight / blockSize);
+        try {
+            PrimitiveIterator.OfLong iterator = numbers.iterator();
+            long[] block = new long[blockSize];
+            int filled = 0;
+            while (iterator.hasNext()) {
+                block[filled++] = iterator.nextLong();
+                if (filled == blockSize) {
+                    pending.add(submit(block));
+                    block = new long[blockSize];
+                    filled = 0;
+                    if (pending.size() >= maxPending) {
+                        write(writer, pending.poll());
+                    }
+                }
+            }
+            if (filled > 0) {
+                // A partial block is below the kernels' threshold and runs the scalar code
+                pending.add(submit(Arrays.copyOf(block, filled)));
+            }
+            while (!pending.isEmpty()) {
+                write(writer, pending.poll());
+            }
+            writer.flush();
+        } finally {
+            // Client gone or bad input: do not leave work behind on the shared pool
+            pending.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private ForkJoinTask<String> submit(long[] block) {
+        return factorizationPool.submit(() -> {
+            long[][] divisors = vectorizedMath.factorize(block);
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < block.length; i++) {
+                appendJsonLine(lines, block[i], divisors[i]);
+            }
+            return lines.toString();
+        });
+    }
+
+    private static void write(Writer writer, ForkJoinTask<String> task) throws IOException {
+        if (!task.isDone()) {
+            // About to wait: send what is ready so the client sees progress
+            writer.flush();
+        }
+        writer.write(task.join());
+    }
+
+    private static void appendJsonLine(StringBuilder line, long n, long[] divisors) {
+        line.append("{\"number\":").append(n).append(",\"divisors\":[");
+        for (int i = 0; i < divisors.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(divisors[i]);
+        }
+        line.append("]}\n");
+    }
+}
@@ -0,0 +1,124 @@
+package com.nbicocchi.math.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs CPU-bound work on one thread per core behind a bounded queue, keeping
+ * request threads free for I/O and health checks. Work is admitted only if it
+ * is expected to start within the latency budget:
+ * <ul>
+ *     <li>429 when the predicted queueing delay (queued tasks times the average
+ *     task duration, divided by the threads) exceeds the budget;</li>
+ *     <li>503 when the queue is full, or when a task has waited past the budget
+ *     anyway and its caller has most likely given up.</li>
+ * </ul>
+ */
+public class CpuExecutor implements AutoCloseable {
+    /** Weight of the latest task duration in the moving average */
+    private static final double SMOOTHING = 0.2;
+
+    private final ThreadPoolExecutor pool;
+    private final long budgetNanos;
+    private final Timer queueWait;
+    private final Counter rejectedOverBudget;
+    private final Counter rejectedQueueFull;
+    private final Counter expired;
+    // Written under the lock of recordDuration, read without it by predictedWaitNanos
+    private volatile double averageTaskNanos;
+
+    public CpuExecutor(int threads, int queueCapacity, Duration latencyBudget, MeterRegistry meterRegistry) {
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "cpu-" + count.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.budgetNanos = latencyBudget.toNanos();
+
+        // executor_queued_tasks, executor_active_threads, executor_completed_tasks_total, ...
+        new ExecutorServiceMetrics(pool, "cpu", Tags.empty()).bindTo(meterRegistry);
+        this.queueWait = Timer.builder("math.cpu.queue.wait")
+                .description("Time spent by CPU tasks waiting for a thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedOverBudget = Counter.builder("math.cpu.rejected").tag("reason", "over-budget").register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("math.cpu.rejected").tag("reason", "queue-full").register(meterRegistry);
+        this.expired = Counter.builder("math.cpu.rejected").tag("reason", "expired").register(meterRegistry);
+    }
+
+    /**
+     * Runs the task on the CPU pool and waits for its result.
+     *
+     * @throws ResponseStatusException with status 429 or 503 if the task is not admitted
+     */
+    public <T> T execute(Supplier<T> task) {
+        if (predictedWaitNanos() > budgetNanos) {
+            rejectedOverBudget.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Expected queueing delay exceeds the latency budget");
+        }
+
+        long enqueued = System.nanoTime();
+        FutureTask<T> future = new FutureTask<>(() -> {
+            long started = System.nanoTime();
+            queueWait.record(started - enqueued, TimeUnit.NANOSECONDS);
+            if (started - enqueued > budgetNanos) {
+                expired.increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Latency budget exceeded while queued");
+            }
+            try {
+                return task.get();
+            } finally {
+                recordDuration(System.nanoTime() - started);
+            }
+        });
+
+        try {
+            pool.execute(future);
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "CPU queue is full");
+        }
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for the CPU pool");
+        }
+    }
+
+    private synchronized void recordDuration(long durationNanos) {
+        // A read-modify-write: unsynchronized, concurrent workers would lose each other's updates
+        averageTaskNanos += SMOOTHING * (durationNanos - averageTaskNanos);
+    }
+
+    private double predictedWaitNanos() {
+        return pool.getQueue().size() * averageTaskNanos / pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,8 @@
+package com.nbicocchi.math.service;
+
+public enum ExecutionMode {
+    /** CPU work runs on the request thread */
+    INLINE,
+    /** CPU work is handed to the CpuExecutor, with admission control */
+    OFFLOAD
+}
@@ -0,0 +1,8 @@
+package com.nbicocchi.math.service;
+
+public enum FactorizationAlgorithm {
+    /** Trial division by odd numbers, switching to table lookups below math.spf.limit */
+    TRIAL_DIVISION,
+    /** Miller-Rabin primality test and Brent's variant of Pollard's rho */
+    POLLARD_RHO
+}
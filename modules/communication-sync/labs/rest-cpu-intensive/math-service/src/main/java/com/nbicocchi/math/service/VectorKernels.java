@@ -0,0 +1,139 @@
+package com.nbicocchi.math.service;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels built on the incubating Vector API. SIMD units have no integer
+ * division, so lanes hold integers as doubles: below 2^52 a double quotient
+ * is exact when the division is exact and never rounds to an integer when it
+ * is not, which makes "n / p is integral" a sound divisibility test, and
+ * rounding to an integer takes just an addition and a subtraction. Callers
+ * must keep every value in [0, EXACT_LIMIT).
+ * <p>
+ * Only touch this class after checking that the jdk.incubator.vector module
+ * is present, otherwise it fails to load.
+ */
+final class VectorKernels {
+    static final long EXACT_LIMIT = 1L << 52;
+    /** Upper bound on the number of prime factors of a value below EXACT_LIMIT */
+    static final int MAX_FACTORS = 52;
+    /** Adding and subtracting 2^52 rounds a non-negative double below 2^52 to the nearest integer */
+    private static final double ROUNDING = 0x1p52;
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Trial division of a batch: each prime is tested against as many numbers
+     * as there are lanes at a time, and a group of lanes stops as soon as all
+     * of its values are below the square of the next prime. On return a value
+     * is 1, a prime, or (if primes ran out first) a cofactor with no prime
+     * factor in the block.
+     *
+     * @param numbers values in [1, EXACT_LIMIT), replaced by what is left after the division
+     * @param primes  ascending primes
+     * @param factors receives the primes dividing numbers[i], with multiplicity, from factors[i * MAX_FACTORS]
+     * @param counts  receives the number of factors found for numbers[i]
+     */
+    static void divideOut(long[] numbers, long[] primes, long[] factors, int[] counts) {
+        int length = numbers.length;
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = numbers[i];
+        }
+
+        int upperBound = SPECIES.loopBound(length);
+        for (int i = 0; i < upperBound; i += SPECIES.length()) {
+            DoubleVector v = DoubleVector.fromArray(SPECIES, values, i);
+            for (long p : primes) {
+                double divisor = p;
+                if (v.compare(VectorOperators.LT, divisor * divisor).allTrue()) {
+                    break;
+                }
+                while (true) {
+                    DoubleVector quotient = v.div(divisor);
+                    VectorMask<Double> divisible = quotient.eq(round(quotient));
+                    if (!divisible.anyTrue()) {
+                        break;
+                    }
+                    for (long lanes = divisible.toLong(); lanes != 0; lanes &= lanes - 1) {
+                        int k = i + Long.numberOfTrailingZeros(lanes);
+                        factors[k * MAX_FACTORS + counts[k]++] = p;
+                    }
+                    v = v.blend(quotient, divisible);
+                }
+            }
+            v.intoArray(values, i);
+        }
+
+        for (int k = upperBound; k < length; k++) {
+            long n = (long) values[k];
+            for (int j = 0; j < primes.length && primes[j] * primes[j] <= n; j++) {
+                long p = primes[j];
+                while (n % p == 0) {
+                    factors[k * MAX_FACTORS + counts[k]++] = p;
+                    n /= p;
+                }
+            }
+            values[k] = n;
+        }
+
+        for (int i = 0; i < length; i++) {
+            numbers[i] = (long) values[i];
+        }
+    }
+
+    /**
+     * @param numbers values in [0, EXACT_LIMIT)
+     * @return the greatest common divisor of all the numbers, 0 if they are all 0
+     */
+    static long gcd(long[] numbers) {
+        int length = numbers.length;
+        int upperBound = SPECIES.loopBound(length);
+        double[] chunk = new double[SPECIES.length()];
+
+        DoubleVector accumulator = DoubleVector.zero(SPECIES);
+        for (int i = 0; i < upperBound; i += SPECIES.length()) {
+            for (int j = 0; j < chunk.length; j++) {
+                chunk[j] = numbers[i + j];
+            }
+            accumulator = gcd(accumulator, DoubleVector.fromArray(SPECIES, chunk, 0));
+            if (accumulator.eq(1).allTrue()) {
+                return 1;
+            }
+        }
+
+        long result = 0;
+        for (int j = 0; j < SPECIES.length(); j++) {
+            result = VectorizedMath.gcd(result, (long) accumulator.lane(j));
+        }
+        for (int i = upperBound; i < length; i++) {
+            result = VectorizedMath.gcd(result, numbers[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Lanewise Euclid with the remainder of least absolute value, which also
+     * spares the floor: a lane is done when its b reaches 0.
+     */
+    private static DoubleVector gcd(DoubleVector a, DoubleVector b) {
+        VectorMask<Double> active = b.compare(VectorOperators.NE, 0);
+        while (active.anyTrue()) {
+            DoubleVector remainder = a.sub(round(a.div(b)).mul(b)).abs();
+            a = a.blend(b, active);
+            b = b.blend(remainder, active);
+            active = b.compare(VectorOperators.NE, 0);
+        }
+        return a;
+    }
+
+    private static DoubleVector round(DoubleVector v) {
+        return v.add(ROUNDING).sub(ROUNDING);
+    }
+}
@@ -0,0 +1,136 @@
+package com.nbicocchi.math.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Batch operations that switch to the SIMD kernels of VectorKernels when
+ * math.vector.enabled is set, the JVM was started with
+ * --add-modules jdk.incubator.vector, the batch holds at least blockSize
+ * numbers and they all fit the exact range of the kernels. Anything else runs
+ * the scalar code, with the same results.
+ */
+@Slf4j
+@Service
+public class VectorizedMath {
+    /** Primes used by the divisibility kernel: numbers below PRIME_BOUND^2 are factorized by it entirely */
+    private static final int PRIME_BOUND = 1 << 20;
+
+    private final MathService mathService;
+    private final boolean enabled;
+    private final int blockSize;
+    private final long[] primes;
+
+    public VectorizedMath(MathService mathService,
+                          @Value("${math.vector.enabled}") boolean enabled,
+                          @Value("${math.vector.block-size}") int blockSize) {
+        this.mathService = mathService;
+        this.blockSize = blockSize;
+        boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if (enabled && !available) {
+            log.warn("math.vector.enabled is set but jdk.incubator.vector is missing, falling back to scalar code");
+        }
+        this.enabled = enabled && available;
+        // Only the kernels read the primes, the scalar path does not pay for the sieve
+        this.primes = this.enabled ? primesBelow(PRIME_BOUND) : new long[0];
+    }
+
+    /**
+     * @return the batch size worth handing to the kernels, 1 when they are disabled
+     */
+    public int blockSize() {
+        return enabled ? blockSize : 1;
+    }
+
+    /**
+     * @return the prime factors of each number, as MathService.factorize would return them
+     */
+    public long[][] factorize(long[] numbers) {
+        long[][] result = new long[numbers.length][];
+        if (!useKernels(numbers, Long.MIN_VALUE)) {
+            for (int i = 0; i < numbers.length; i++) {
+                result[i] = mathService.factorize(numbers[i]);
+            }
+            return result;
+        }
+
+        // Numbers below 2 have no factors, 1 keeps them out of the kernel's way
+        long[] cofactors = new long[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            cofactors[i] = Math.max(numbers[i], 1);
+        }
+        long[] factors = new long[numbers.length * VectorKernels.MAX_FACTORS];
+        int[] counts = new int[numbers.length];
+        VectorKernels.divideOut(cofactors, primes, factors, counts);
+
+        for (int i = 0; i < numbers.length; i++) {
+            long cofactor = cofactors[i];
+            // Below PRIME_BOUND^2 the kernel leaves 1 or a prime, above it falls back to the scalar code
+            long[] rest = cofactor == 1 ? new long[0]
+                    : cofactor < (long) PRIME_BOUND * PRIME_BOUND ? new long[]{cofactor}
+                    : mathService.factorize(cofactor);
+            long[] all = new long[counts[i] + rest.length];
+            System.arraycopy(factors, i * VectorKernels.MAX_FACTORS, all, 0, counts[i]);
+            System.arraycopy(rest, 0, all, counts[i], rest.length);
+            result[i] = all;
+        }
+        return result;
+    }
+
+    /**
+     * @return the greatest common divisor of the absolute values of the numbers, 0 if they are all 0
+     */
+    public long gcd(long[] numbers) {
+        long[] values = new long[numbers.length];
+        for (int i = 0; i < numbers.length; i++) {
+            values[i] = Math.abs(numbers[i]);
+        }
+        if (useKernels(values, 0)) {
+            return VectorKernels.gcd(values);
+        }
+        long result = 0;
+        for (long value : values) {
+            result = gcd(result, value);
+        }
+        return result;
+    }
+
+    static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return Math.abs(a);
+    }
+
+    private boolean useKernels(long[] numbers, long min) {
+        if (!enabled || numbers.length < blockSize) {
+            return false;
+        }
+        for (long n : numbers) {
+            if (n < min || n >= VectorKernels.EXACT_LIMIT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] primesBelow(int bound) {
+        boolean[] composite = new boolean[bound];
+        long[] primes = new long[bound];
+        int count = 0;
+        for (int i = 2; i < bound; i++) {
+            if (!composite[i]) {
+                primes[count++] = i;
+                for (long j = (long) i * i; j < bound; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        return Arrays.copyOf(primes, count);
+    }
+}
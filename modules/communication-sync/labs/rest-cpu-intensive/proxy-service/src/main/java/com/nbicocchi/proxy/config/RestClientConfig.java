@@ -0,0 +1,36 @@
+package com.nbicocchi.proxy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class RestClientConfig {
+
+    /**
+     * A single client for all requests to math-service. The underlying JDK
+     * HttpClient keeps connections alive and reuses them across requests,
+     * instead of opening a new one per call.
+     */
+    @Bean
+    public RestClient mathServiceClient(@Value("${app.math-service.host}") String host,
+                                        @Value("${app.math-service.port}") int port,
+                                        @Value("${app.math-service.connect-timeout}") Duration connectTimeout,
+                                        @Value("${app.math-service.read-timeout}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return RestClient.builder()
+                .baseUrl("http://" + host + ":" + port)
+                .requestFactory(requestFactory)
+                .build();
+    }
+}
@@ -1,7 +1,8 @@
 package com.nbicocchi.proxy.controller;
 
+import com.nbicocchi.proxy.service.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -13,10 +14,12 @@ import java.util.Map;
 @Log4j2
 @RestController
 public class ProxyController {
-    String mathServiceUrl;
+    RestClient mathServiceClient;
+    SingleFlight<DivisorsKey, Map<String, Object>> divisorsFlights;
 
-    public ProxyController(@Value("${app.math-service.host}") String providerServiceHost, @Value("${app.math-service.port}") int providerServicePort) {
-        mathServiceUrl = "http://" + providerServiceHost + ":" + providerServicePort;
+    public ProxyController(RestClient mathServiceClient, MeterRegistry meterRegistry) {
+        this.mathServiceClient = mathServiceClient;
+        this.divisorsFlights = new SingleFlight<>(meterRegistry, "divisors");
     }
 
     /*
@@ -28,11 +31,8 @@ public class ProxyController {
             @RequestParam Long times,
             @RequestParam String email) {
 
-        RestClient restClient = RestClient.builder()
-                .baseUrl(mathServiceUrl)  // set base URL here
-                .build();
-
-        return restClient.get()
+        // The result does not depend on email, so requests differing only by it share one upstream call
+        return divisorsFlights.execute(new DivisorsKey(number, times), () -> mathServiceClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/divisors")  // only the path, not full URL
                         .queryParam("number", number)
@@ -40,6 +40,8 @@ public class ProxyController {
                         .queryParam("email", email)
                         .build())
                 .retrieve()
-                .body(new ParameterizedTypeReference<Map<String, Object>>() {});
+                .body(new ParameterizedTypeReference<Map<String, Object>>() {}));
     }
-}
\ No newline at end of file
+
+    record DivisorsKey(long number, long times) {}
+}
@@ -0,0 +1,50 @@
+package com.nbicocchi.proxy.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+public class WebClientConfig {
+
+    /**
+     * Upstream connections are bounded by max-connections. Calls beyond it
+     * wait for a free connection, at most pending-acquire-max-count of them and
+     * for no longer than pending-acquire-timeout; further calls fail at once
+     * instead of piling up, which is the backpressure applied to clients.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider mathServiceConnections(@Value("${app.math-service.max-connections}") int maxConnections,
+                                                     @Value("${app.math-service.pending-acquire-max-count}") int pendingAcquireMaxCount,
+                                                     @Value("${app.math-service.pending-acquire-timeout}") Duration pendingAcquireTimeout) {
+        return ConnectionProvider.builder("math-service")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient mathServiceClient(ConnectionProvider mathServiceConnections,
+                                       @Value("${app.math-service.host}") String host,
+                                       @Value("${app.math-service.port}") int port,
+                                       @Value("${app.math-service.connect-timeout}") Duration connectTimeout,
+                                       @Value("${app.math-service.read-timeout}") Duration readTimeout) {
+        HttpClient httpClient = HttpClient.create(mathServiceConnections)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+        return WebClient.builder()
+                .baseUrl("http://" + host + ":" + port)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package com.nbicocchi.proxy.controller;
+
+import io.netty.handler.timeout.ReadTimeoutException;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Set;
+
+@Log4j2
+@RestController
+public class ProxyController {
+    // reactor-netty shades reactor-pool, so its exceptions are matched by name rather than by a type from an internal package
+    private static final Set<String> POOL_EXHAUSTED = Set.of("PoolAcquirePendingLimitException", "PoolAcquireTimeoutException");
+
+    WebClient mathServiceClient;
+
+    public ProxyController(WebClient mathServiceClient) {
+        this.mathServiceClient = mathServiceClient;
+    }
+
+    /*
+    echo 'GET http://localhost:8082/divisors?number=1234&times=40&email=test@test.com' | vegeta attack -rate=50 -duration=30s | vegeta report
+     */
+    @GetMapping("/divisors")
+    public Mono<Map<String, Object>> searchPrimes(
+            @RequestParam Long number,
+            @RequestParam Long times,
+            @RequestParam String email) {
+
+        return mathServiceClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/divisors")
+                        .queryParam("number", number)
+                        .queryParam("times", times)
+                        .queryParam("email", email)
+                        .build())
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .onErrorMap(WebClientRequestException.class, ProxyController::toStatus);
+    }
+
+    private static ResponseStatusException toStatus(WebClientRequestException e) {
+        if (isPoolExhausted(e)) {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending calls to math-service", e);
+        }
+        if (e.getCause() instanceof ReadTimeoutException) {
+            return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "math-service did not answer in time", e);
+        }
+        log.warn("Call to math-service failed: {}", e.getMessage());
+        return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "math-service is unreachable", e);
+    }
+
+    private static boolean isPoolExhausted(Throwable e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (POOL_EXHAUSTED.contains(cause.getClass().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,15 +3,24 @@ package com.nbicocchi.post.controller;
 import com.nbicocchi.post.controller.dto.PostDTO;
 import com.nbicocchi.post.persistence.model.Post;
 import com.nbicocchi.post.persistence.repository.PostRepository;
+import com.nbicocchi.post.service.IdempotencyService;
+import com.nbicocchi.post.service.PostStreamService;
+import com.nbicocchi.post.service.WriteBehindPostWriter;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -19,19 +28,63 @@ import java.util.stream.StreamSupport;
 @RestController
 @RequestMapping("/posts")
 public class PostController {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final PostRepository postRepository;
-    private final StringRedisTemplate redisTemplate;
+    private final PostStreamService postStreamService;
+    private final IdempotencyService idempotencyService;
+    private final Optional<WriteBehindPostWriter> postWriter;
 
     public PostController(PostRepository postRepository,
-                          StringRedisTemplate redisTemplate) {
+                          PostStreamService postStreamService,
+                          IdempotencyService idempotencyService,
+                          Optional<WriteBehindPostWriter> postWriter) {
         this.postRepository = postRepository;
-        this.redisTemplate = redisTemplate;
+        this.postStreamService = postStreamService;
+        this.idempotencyService = idempotencyService;
+        this.postWriter = postWriter;
     }
 
+    /*
+    Pages through posts ordered by (timestamp, id). The Link header points to the next page:
+    curl -i 'http://localhost:8080/posts?limit=2'
+    curl -i 'http://localhost:8080/posts?limit=2&afterTimestamp=2025-03-01T10:32:00&afterId=2'
+    */
     @GetMapping
-    public Iterable<PostDTO> findAll() {
-        Iterable<Post> foundPosts = postRepository.findAll();
-        return mapToDTO(foundPosts);
+    public ResponseEntity<Iterable<PostDTO>> findAll(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((afterTimestamp == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterTimestamp and afterId go together");
+        }
+
+        List<Post> page = afterTimestamp == null
+                ? postRepository.findAllByOrderByTimestampAscIdAsc(Limit.of(limit))
+                : postRepository.findAllAfter(afterTimestamp, afterId, Limit.of(limit));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            Post last = page.getLast();
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("afterTimestamp", last.getTimestamp())
+                    .replaceQueryParam("afterId", last.getId())
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(mapToDTO(page));
+    }
+
+    /*
+    Streams every post without loading the table in memory:
+    curl -H 'Accept: application/x-ndjson' http://localhost:8080/posts
+    */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        return postStreamService::writeAll;
     }
 
     @GetMapping("/{userUUID}")
@@ -45,22 +98,19 @@ public class PostController {
             @RequestHeader("Idempotency-Key") String key,
             @RequestBody PostDTO postDTO) {
 
-        ValueOperations<String, String> ops = redisTemplate.opsForValue();
-
-        // Try to set the key only if it does not exist
-        Boolean success = ops.setIfAbsent(key, "1", Duration.ofHours(1));
-        if (Boolean.FALSE.equals(success)) {
-            // Key already exists → duplicate request
-            log.info("Key {} exists", key);
-            return ResponseEntity.status(HttpStatus.CONFLICT).build();
-        }
-
-        // Save post in DB
-        Post post = new Post(postDTO.getUserUUID(), postDTO.getTimestamp(), postDTO.getContent());
-        log.info("Adding post: {}", post);
-        postRepository.save(post);
+        // Retries with the same key get the stored response back instead of a second insert
+        return idempotencyService.execute(key, PostDTO.class, () -> {
+            Post post = new Post(postDTO.getUserUUID(), postDTO.getTimestamp(), postDTO.getContent());
+            log.info("Adding post: {}", post);
+            if (postWriter.isEmpty()) {
+                postRepository.save(post);
+                return ResponseEntity.status(HttpStatus.CREATED).body(postDTO);
+            }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(postDTO);
+            // Only queued, not yet stored: accepted rather than created
+            boolean stored = postWriter.get().write(post);
+            return ResponseEntity.status(stored ? HttpStatus.CREATED : HttpStatus.ACCEPTED).body(postDTO);
+        });
     }
 
     private Iterable<PostDTO> mapToDTO(Iterable<Post> posts) {
@@ -4,6 +4,8 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -13,6 +15,7 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 @Data
 @Entity
+@Table(indexes = @Index(name = "idx_post_timestamp_id", columnList = "timestamp, id"))
 public class Post {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,14 +1,32 @@
 package com.nbicocchi.post.persistence.repository;
 
 import com.nbicocchi.post.persistence.model.Post;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends CrudRepository<Post, Long> {
     Iterable<Post> findByUserUUID(String userUUID);
     Optional<Post> findByUserUUIDAndTimestamp(String userUUID, LocalDateTime timestamp);
+
+    // Keyset pagination over (timestamp, id), served by idx_post_timestamp_id
+    List<Post> findAllByOrderByTimestampAscIdAsc(Limit limit);
+
+    @Query("SELECT p FROM Post p WHERE p.timestamp > :timestamp OR (p.timestamp = :timestamp AND p.id > :id) ORDER BY p.timestamp, p.id")
+    List<Post> findAllAfter(LocalDateTime timestamp, Long id, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Post> streamAllByOrderByTimestampAscIdAsc();
 }
@@ -0,0 +1,139 @@
+package com.nbicocchi.post.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nbicocchi.post.dto.IdempotencyRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JavaType;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per Idempotency-Key and replays its response
+ * (status and body) to every retry.
+ * <p>
+ * The first request stores an in-flight marker under the key, runs, then
+ * replaces the marker with the response. Concurrent duplicates wait for the
+ * response instead of failing; if the first request fails, the marker is
+ * removed and one of them takes over. Completed responses are also kept in a
+ * near-cache, so retries hitting the same instance do not reach Redis.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final String IN_FLIGHT = "IN_FLIGHT";
+    private static final long MAX_POLL_INTERVAL_MS = 200;
+
+    private final StringRedisTemplate redisTemplate;
+    private final JsonMapper mapper;
+    private final Cache<String, String> nearCache;
+    private final Duration ttl;
+    private final Duration inFlightTtl;
+    private final Duration waitTimeout;
+
+    // The application's mapper, so replayed bodies look exactly like first responses
+    public IdempotencyService(StringRedisTemplate redisTemplate,
+                              JsonMapper mapper,
+                              @Value("${idempotency.ttl}") Duration ttl,
+                              @Value("${idempotency.in-flight-ttl}") Duration inFlightTtl,
+                              @Value("${idempotency.wait-timeout}") Duration waitTimeout,
+                              @Value("${idempotency.near-cache-size}") long nearCacheSize) {
+        this.redisTemplate = redisTemplate;
+        this.mapper = mapper;
+        this.ttl = ttl;
+        this.inFlightTtl = inFlightTtl;
+        this.waitTimeout = waitTimeout;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public <T> ResponseEntity<T> execute(String key, Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        JavaType recordType = mapper.getTypeFactory().constructParametricType(IdempotencyRecord.class, bodyType);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        long pollInterval = 10;
+
+        while (true) {
+            IdempotencyRecord<T> record = find(key, recordType);
+            if (record != null) {
+                log.info("Key {} exists, replaying response", key);
+                return ResponseEntity.status(record.getResponseStatus())
+                        .header("Idempotent-Replayed", "true")
+                        .body(record.getResponseBody());
+            }
+
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, IN_FLIGHT, inFlightTtl);
+            if (Boolean.TRUE.equals(acquired)) {
+                return runOnce(key, action);
+            }
+
+            if (System.nanoTime() > deadline) {
+                // Still in flight elsewhere: the client may retry later and get the stored response
+                log.info("Key {} still in flight", key);
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            sleep(pollInterval);
+            pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL_MS);
+        }
+    }
+
+    private <T> ResponseEntity<T> runOnce(String key, Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Nothing to replay: let a retry run the request again
+            redisTemplate.delete(KEY_PREFIX + key);
+            throw e;
+        }
+
+        int status = response.getStatusCode().value();
+        String json;
+        try {
+            json = mapper.writeValueAsString(new IdempotencyRecord<>(key, response.getBody(), status));
+        } catch (JacksonException e) {
+            // The request has run: replace the short-lived marker with a terminal record under the full ttl,
+            // so retries replay the status (without a body) rather than running it again once the marker expires
+            log.error("Unable to store response body for key {}, replaying its status only", key, e);
+            json = mapper.writeValueAsString(new IdempotencyRecord<>(key, null, status));
+        }
+        redisTemplate.opsForValue().set(KEY_PREFIX + key, json, ttl);
+        nearCache.put(key, json);
+        return response;
+    }
+
+    private <T> IdempotencyRecord<T> find(String key, JavaType recordType) {
+        String json = nearCache.getIfPresent(key);
+        if (json == null) {
+            json = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+            if (json == null || IN_FLIGHT.equals(json)) {
+                return null;
+            }
+            nearCache.put(key, json);
+        }
+        try {
+            return mapper.readValue(json, recordType);
+        } catch (JacksonException e) {
+            throw new IllegalStateException("Corrupted idempotency record for key " + key, e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for key to complete", e);
+        }
+    }
+}
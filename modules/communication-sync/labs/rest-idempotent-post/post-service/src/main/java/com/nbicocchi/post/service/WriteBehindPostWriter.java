@@ -0,0 +1,159 @@
+package com.nbicocchi.post.service;
+
+import com.nbicocchi.post.persistence.model.Post;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind storage for posts. Accepted posts wait in a bounded queue
+ * that a single writer thread drains into JDBC batch inserts, flushing when a
+ * batch is full or when its oldest post has waited flushInterval. Batching
+ * goes through JDBC because Hibernate disables insert batching for IDENTITY
+ * ids.
+ * <p>
+ * With ack after-flush a caller returns once its post is in the database;
+ * with after-enqueue it returns as soon as the post is queued, and posts still
+ * queued are lost if the instance dies.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "post.write-mode", havingValue = "write-behind")
+public class WriteBehindPostWriter {
+    private static final String INSERT = "INSERT INTO post (user_uuid, timestamp, content) VALUES (?, ?, ?)";
+
+    public enum Ack { AFTER_FLUSH, AFTER_ENQUEUE }
+
+    private record PendingPost(Post post, CompletableFuture<Void> flushed) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<PendingPost> queue;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Ack ack;
+    private final Duration flushTimeout;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public WriteBehindPostWriter(JdbcTemplate jdbcTemplate,
+                                 @Value("${post.write-behind.queue-capacity}") int queueCapacity,
+                                 @Value("${post.write-behind.batch-size}") int batchSize,
+                                 @Value("${post.write-behind.flush-interval}") Duration flushInterval,
+                                 @Value("${post.write-behind.ack}") Ack ack,
+                                 @Value("${post.write-behind.flush-timeout}") Duration flushTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.ack = ack;
+        this.flushTimeout = flushTimeout;
+        this.writer = new Thread(this::drain, "post-writer");
+        this.writer.start();
+    }
+
+    /**
+     * Once a post is queued it is never reported as failed unless its flush
+     * fails: a caller that stops waiting gets false, like with after-enqueue,
+     * so the response can still be stored against its Idempotency-Key.
+     *
+     * @return true if the post is in the database, false if it is only queued
+     * @throws ResponseStatusException with status 503 if the queue is full
+     */
+    public boolean write(Post post) {
+        PendingPost pending = new PendingPost(post, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Write queue is full");
+        }
+        if (ack == Ack.AFTER_ENQUEUE) {
+            return false;
+        }
+        try {
+            pending.flushed().get(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // Still queued and written later: an error here would let a retry queue it twice
+            log.warn("Post not flushed within {}, answering as queued", flushTimeout);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private void drain() {
+        List<PendingPost> batch = new ArrayList<>(batchSize);
+        // On shutdown keep going until everything accepted has been written
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPost first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingPost next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                running = false;
+                flush(batch);
+            } catch (Throwable e) {
+                // Fail this batch only, the writer must outlive any single batch
+                log.error("Unable to collect {} posts", batch.size(), e);
+                batch.forEach(pending -> pending.flushed().completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingPost> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(INSERT, batch, batch.size(), (ps, pending) -> {
+                ps.setString(1, pending.post().getUserUUID());
+                ps.setTimestamp(2, Timestamp.valueOf(pending.post().getTimestamp()));
+                ps.setString(3, pending.post().getContent());
+            });
+            log.info("Flushed {} posts", batch.size());
+            batch.forEach(pending -> pending.flushed().complete(null));
+        } catch (RuntimeException e) {
+            log.error("Unable to flush {} posts", batch.size(), e);
+            batch.forEach(pending -> pending.flushed().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        writer.join();
+    }
+}
@@ -0,0 +1,28 @@
+package com.nbicocchi.post.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    /**
+     * Adds CBOR and Smile for clients asking for them with Accept. They go
+     * after JSON, so browsers and other clients accepting anything keep
+     * getting JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        if (converters.stream().noneMatch(JacksonCborHttpMessageConverter.class::isInstance)) {
+            converters.add(new JacksonCborHttpMessageConverter());
+        }
+        if (converters.stream().noneMatch(JacksonSmileHttpMessageConverter.class::isInstance)) {
+            converters.add(new JacksonSmileHttpMessageConverter());
+        }
+    }
+}
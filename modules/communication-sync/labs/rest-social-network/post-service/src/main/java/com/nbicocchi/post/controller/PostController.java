@@ -3,8 +3,21 @@ package com.nbicocchi.post.controller;
 import com.nbicocchi.post.controller.dto.PostDTO;
 import com.nbicocchi.post.persistence.model.Post;
 import com.nbicocchi.post.persistence.repository.PostRepository;
+import com.nbicocchi.post.service.PostStreamService;
+import com.nbicocchi.post.service.PostVersions;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -12,22 +25,74 @@ import java.util.stream.StreamSupport;
 @RestController
 @RequestMapping("/posts")
 public class PostController {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     PostRepository postRepository;
+    PostStreamService postStreamService;
+    PostVersions postVersions;
 
-    public PostController(PostRepository postRepository) {
+    public PostController(PostRepository postRepository, PostStreamService postStreamService, PostVersions postVersions) {
         this.postRepository = postRepository;
+        this.postStreamService = postStreamService;
+        this.postVersions = postVersions;
     }
 
+    /*
+    Answers 304 without touching the database when the client already has the current posts:
+    curl -i http://localhost:7001/posts/171f5df0-b213-4a40-8ae6-fe82239ab660
+    curl -i -H 'If-None-Match: "<etag>"' http://localhost:7001/posts/171f5df0-b213-4a40-8ae6-fe82239ab660
+    */
     @GetMapping("/{userUUID}")
-    public Iterable<PostDTO> findByUuid(@PathVariable String userUUID) {
+    public ResponseEntity<Iterable<PostDTO>> findByUuid(@PathVariable String userUUID, WebRequest request) {
+        // The version must be read before the posts, see PostVersions
+        String etag = postVersions.etag(userUUID);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         Iterable<Post> foundPosts = postRepository.findByUserUUID(userUUID);
-        return mapToDTO(foundPosts);
+        return ResponseEntity.ok().eTag(etag).body(mapToDTO(foundPosts));
     }
 
+    /*
+    Pages through posts ordered by (timestamp, id). The Link header points to the next page:
+    curl -i 'http://localhost:7001/posts?limit=2'
+    curl -i 'http://localhost:7001/posts?limit=2&afterTimestamp=2025-03-01T10:32:00&afterId=2'
+    */
     @GetMapping
-    public Iterable<PostDTO> findAll() {
-        Iterable<Post> foundPosts = postRepository.findAll();
-        return mapToDTO(foundPosts);
+    public ResponseEntity<Iterable<PostDTO>> findAll(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if ((afterTimestamp == null) != (afterId == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "afterTimestamp and afterId go together");
+        }
+
+        List<Post> page = afterTimestamp == null
+                ? postRepository.findAllByOrderByTimestampAscIdAsc(Limit.of(limit))
+                : postRepository.findAllAfter(afterTimestamp, afterId, Limit.of(limit));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.size() == limit) {
+            Post last = page.getLast();
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("afterTimestamp", last.getTimestamp())
+                    .replaceQueryParam("afterId", last.getId())
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(mapToDTO(page));
+    }
+
+    /*
+    Streams every post without loading the table in memory:
+    curl -H 'Accept: application/x-ndjson' http://localhost:7001/posts
+    */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        return postStreamService::writeAll;
     }
 
     private Iterable<PostDTO> mapToDTO(Iterable<Post> posts) {
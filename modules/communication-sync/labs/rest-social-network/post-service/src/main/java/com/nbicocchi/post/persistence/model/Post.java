@@ -1,9 +1,12 @@
 package com.nbicocchi.post.persistence.model;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -13,6 +16,8 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 @Data
 @Entity
+@EntityListeners(PostVersionListener.class)
+@Table(indexes = @Index(name = "idx_post_timestamp_id", columnList = "timestamp, id"))
 public class Post {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
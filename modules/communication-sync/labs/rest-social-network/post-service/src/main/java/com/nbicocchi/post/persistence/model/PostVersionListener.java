@@ -0,0 +1,24 @@
+package com.nbicocchi.post.persistence.model;
+
+import com.nbicocchi.post.service.PostVersions;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Bumps the version of a user's posts whenever one of them is written.
+ */
+public class PostVersionListener {
+    private final PostVersions postVersions;
+
+    public PostVersionListener(PostVersions postVersions) {
+        this.postVersions = postVersions;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(Post post) {
+        postVersions.changed(post.getUserUUID());
+    }
+}
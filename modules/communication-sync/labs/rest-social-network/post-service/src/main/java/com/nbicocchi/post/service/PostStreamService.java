@@ -0,0 +1,50 @@
+package com.nbicocchi.post.service;
+
+import com.nbicocchi.post.controller.dto.PostDTO;
+import com.nbicocchi.post.persistence.model.Post;
+import com.nbicocchi.post.persistence.repository.PostRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes every post as NDJSON straight from a database cursor. Rows are
+ * fetched a few hundred at a time and detached once written, so memory stays
+ * flat however large the table is.
+ */
+@Service
+public class PostStreamService {
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final PostRepository postRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    // The application's mapper, so streamed posts look exactly like the ones in a page
+    public PostStreamService(PostRepository postRepository, EntityManager entityManager, JsonMapper jsonMapper) {
+        this.postRepository = postRepository;
+        this.entityManager = entityManager;
+        this.writer = jsonMapper.writerFor(PostDTO.class);
+    }
+
+    // The cursor is only open inside a transaction
+    @Transactional(readOnly = true)
+    public void writeAll(OutputStream out) throws IOException {
+        try (Stream<Post> posts = postRepository.streamAllByOrderByTimestampAscIdAsc()) {
+            Iterator<Post> iterator = posts.iterator();
+            while (iterator.hasNext()) {
+                Post p = iterator.next();
+                out.write(writer.writeValueAsBytes(new PostDTO(p.getUserUUID(), p.getTimestamp(), p.getContent())));
+                out.write(NEWLINE);
+                entityManager.detach(p);
+            }
+        }
+    }
+}
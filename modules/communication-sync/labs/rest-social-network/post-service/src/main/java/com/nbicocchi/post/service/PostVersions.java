@@ -0,0 +1,43 @@
+package com.nbicocchi.post.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Version counters for the posts of each user, used as strong ETags for
+ * /posts/{userUUID}. A counter moves only after the transaction changing the
+ * posts commits, and readers take the version before reading the posts, so an
+ * ETag is never attached to data newer than it. The epoch changes at every
+ * restart, so ETags handed out by a previous instance never match.
+ */
+@Service
+public class PostVersions {
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final ConcurrentMap<String, Long> versions = new ConcurrentHashMap<>();
+
+    public String etag(String userUUID) {
+        return "\"" + epoch + "-" + versions.getOrDefault(userUUID, 0L) + "\"";
+    }
+
+    public void changed(String userUUID) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(userUUID);
+                }
+            });
+        } else {
+            increment(userUUID);
+        }
+    }
+
+    private void increment(String userUUID) {
+        versions.merge(userUUID, 1L, Long::sum);
+    }
+}
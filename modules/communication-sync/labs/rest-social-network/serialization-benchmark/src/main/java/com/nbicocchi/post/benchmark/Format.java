@@ -0,0 +1,28 @@
+package com.nbicocchi.post.benchmark;
+
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.util.function.Supplier;
+
+/**
+ * The encodings post-service can negotiate, each with the mapper its message
+ * converter is built on.
+ */
+public enum Format {
+    JSON(JsonMapper::new),
+    CBOR(CBORMapper::new),
+    SMILE(SmileMapper::new);
+
+    private final Supplier<ObjectMapper> mapper;
+
+    Format(Supplier<ObjectMapper> mapper) {
+        this.mapper = mapper;
+    }
+
+    ObjectMapper mapper() {
+        return mapper.get();
+    }
+}
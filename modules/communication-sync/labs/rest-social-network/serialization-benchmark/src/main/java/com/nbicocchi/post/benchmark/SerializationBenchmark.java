@@ -0,0 +1,70 @@
+package com.nbicocchi.post.benchmark;
+
+import com.nbicocchi.post.controller.dto.PostDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes a list of posts, as sent by /posts/{userUUID}, in each
+ * format. The payload size of each format is printed when its trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SerializationBenchmark {
+    private static final TypeReference<List<PostDTO>> POST_LIST = new TypeReference<>() {};
+
+    @Param
+    public Format format;
+
+    @Param({"10", "1000"})
+    public int posts;
+
+    private ObjectMapper mapper;
+    private List<PostDTO> list;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = format.mapper();
+        String userUUID = UUID.randomUUID().toString();
+        LocalDateTime timestamp = LocalDateTime.of(2025, 3, 1, 10, 30);
+        list = new ArrayList<>(posts);
+        for (int i = 0; i < posts; i++) {
+            list.add(new PostDTO(userUUID, timestamp.plusMinutes(i), "post number " + i + " looking for an apartment"));
+        }
+        payload = mapper.writeValueAsBytes(list);
+        System.out.printf("%n%s payload for %d posts: %d bytes%n", format, posts, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public List<PostDTO> decode() {
+        return mapper.readValue(payload, POST_LIST);
+    }
+}
@@ -1,30 +1,75 @@
 package com.nbicocchi.user.integration;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.nbicocchi.user.controller.dto.PostDTO;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
+import java.util.List;
+
 @Component
 public class PostIntegration {
-    String postServiceHost;
-    int postServicePort;
+    // Posts of a user as last received, with the ETag they came with
+    private record CachedPosts(String etag, List<PostDTO> posts) {}
+
+    private final RestClient restClient;
+    private final MediaType mediaType;
+    private final Cache<String, CachedPosts> cache;
 
     public PostIntegration(
             @Value("${app.post-service.host}") String postServiceHost,
-            @Value("${app.post-service.port}") int postServicePort) {
-        this.postServiceHost = postServiceHost;
-        this.postServicePort = postServicePort;
+            @Value("${app.post-service.port}") int postServicePort,
+            @Value("${app.post-service.cache-size}") long cacheSize,
+            @Value("${app.post-service.media-type}") MediaType mediaType) {
+        this.restClient = RestClient.builder()
+                .baseUrl("http://" + postServiceHost + ":" + postServicePort)
+                .messageConverters(converters -> {
+                    if (converters.stream().noneMatch(JacksonCborHttpMessageConverter.class::isInstance)) {
+                        converters.add(new JacksonCborHttpMessageConverter());
+                    }
+                    if (converters.stream().noneMatch(JacksonSmileHttpMessageConverter.class::isInstance)) {
+                        converters.add(new JacksonSmileHttpMessageConverter());
+                    }
+                })
+                .build();
+        this.mediaType = mediaType;
+        this.cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
     }
 
+    /**
+     * Revalidates the cached posts of the user with If-None-Match, so unchanged
+     * posts cost a 304 with an empty body instead of a full download.
+     */
     public Iterable<PostDTO> findbyUserUUID(String userUUID) {
-        String url = "http://" + postServiceHost + ":" + postServicePort + "/posts" + "/" + userUUID;
-        RestClient restClient = RestClient.builder().build();
-        return restClient.get()
-                .uri(url)
+        CachedPosts cached = cache.getIfPresent(userUUID);
+        ResponseEntity<List<PostDTO>> response = restClient.get()
+                .uri("/posts/{userUUID}", userUUID)
+                .accept(mediaType)
+                .headers(headers -> {
+                    if (cached != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                })
                 .retrieve()
-                .body(new ParameterizedTypeReference<>() {});
+                .toEntity(new ParameterizedTypeReference<>() {});
+
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+            return cached.posts();
+        }
+        List<PostDTO> posts = response.getBody();
+        String etag = response.getHeaders().getETag();
+        if (etag != null) {
+            cache.put(userUUID, new CachedPosts(etag, posts));
+        }
+        return posts;
     }
 }
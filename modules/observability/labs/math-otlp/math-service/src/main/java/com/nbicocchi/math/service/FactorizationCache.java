@@ -0,0 +1,46 @@
+package com.nbicocchi.math.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.function.LongFunction;
+
+/**
+ * Memoizes factorizations by number. The cache is bounded by the approximate
+ * heap taken by its entries, which also caps the number of entries since each
+ * one weighs at least ENTRY_OVERHEAD_BYTES; the least valuable entries are
+ * evicted first. Misses are computed outside the cache, so a slow
+ * factorization never blocks lookups of other numbers.
+ */
+public class FactorizationCache {
+    /** Rough footprint of an entry without its factors: key, node and array header */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final boolean enabled;
+    private final Cache<Long, long[]> cache;
+
+    public FactorizationCache(boolean enabled, long maxBytes) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long n, long[] factors) -> ENTRY_OVERHEAD_BYTES + Long.BYTES * factors.length)
+                .recordStats()
+                .build();
+    }
+
+    public long[] get(long n, LongFunction<long[]> factorizer) {
+        if (!enabled) {
+            return factorizer.apply(n);
+        }
+        long[] factors = cache.getIfPresent(n);
+        if (factors == null) {
+            factors = factorizer.apply(n);
+            cache.put(n, factors);
+        }
+        return factors;
+    }
+
+    public Cache<Long, long[]> nativeCache() {
+        return cache;
+    }
+}
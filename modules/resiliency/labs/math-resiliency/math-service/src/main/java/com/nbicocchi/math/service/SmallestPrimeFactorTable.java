@@ -0,0 +1,155 @@
+package com.nbicocchi.math.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Smallest prime factor of every odd number below a limit, built with a
+ * segmented sieve and persisted to a memory-mapped file, so that a restart maps
+ * the file instead of sieving again. The smallest factor of an odd composite
+ * below 2^32 is below 2^16, hence a single char per odd number is enough;
+ * primes are stored as 0.
+ */
+@Slf4j
+public class SmallestPrimeFactorTable {
+    private static final int MAGIC = 0x53504654;
+    private static final int HEADER_BYTES = 16;
+    private static final int SEGMENT_ODDS = 1 << 15;
+
+    private final long limit;
+    private final int entries;
+    private final CharBuffer table;
+
+    /**
+     * @param limit the table covers every number below this value
+     * @param file  where the table is persisted, or null to keep it in memory only
+     */
+    public SmallestPrimeFactorTable(long limit, Path file) {
+        if (limit < 3 || (limit + 1) / 2 * 2 > Integer.MAX_VALUE - HEADER_BYTES) {
+            throw new IllegalArgumentException("limit out of range: " + limit);
+        }
+        this.limit = limit;
+        this.entries = (int) ((limit + 1) / 2);
+        this.table = open(file);
+    }
+
+    /**
+     * @return the exclusive upper bound of the numbers covered by the table
+     */
+    public long limit() {
+        return limit;
+    }
+
+    /**
+     * @param n a number such that 1 < n < limit()
+     * @return the smallest prime factor of n
+     */
+    public long smallestFactor(long n) {
+        if ((n & 1) == 0) {
+            return 2;
+        }
+        char p = table.get((int) (n >>> 1));
+        return p == 0 ? n : p;
+    }
+
+    private CharBuffer open(Path file) {
+        long size = HEADER_BYTES + 2L * entries;
+        if (file != null) {
+            try {
+                if (Files.exists(file) && Files.size(file) == size) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                        buffer.order(ByteOrder.LITTLE_ENDIAN);
+                        if (buffer.getInt(0) == MAGIC && buffer.getLong(4) == limit) {
+                            log.info("Smallest prime factor table mapped from {}", file);
+                            return tableView(buffer);
+                        }
+                    }
+                }
+
+                // Build into a temporary file, then publish it atomically
+                Path directory = Files.createDirectories(file.toAbsolutePath().getParent());
+                Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    build(buffer);
+                    buffer.force();
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    log.info("Smallest prime factor table built up to {} and saved to {}", limit, file);
+                    return tableView(buffer).asReadOnlyBuffer();
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            } catch (IOException e) {
+                log.warn("Unable to persist smallest prime factor table to {}: {}", file, e.getMessage());
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        build(buffer);
+        log.info("Smallest prime factor table built up to {} in memory", limit);
+        return tableView(buffer).asReadOnlyBuffer();
+    }
+
+    private CharBuffer tableView(ByteBuffer buffer) {
+        return buffer.slice(HEADER_BYTES, 2 * entries).order(ByteOrder.LITTLE_ENDIAN).asCharBuffer();
+    }
+
+    private void build(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putLong(4, limit);
+        CharBuffer out = tableView(buffer);
+
+        // Odd base primes up to the square root of the limit
+        int root = (int) Math.sqrt((double) limit) + 1;
+        boolean[] composite = new boolean[root + 1];
+        int[] basePrimes = new int[root];
+        int basePrimeCount = 0;
+        for (int i = 3; i <= root; i += 2) {
+            if (!composite[i]) {
+                basePrimes[basePrimeCount++] = i;
+                for (long j = (long) i * i; j <= root; j += 2L * i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+
+        // Sieve one cache-sized segment of odd numbers at a time, smallest primes first
+        char[] segment = new char[SEGMENT_ODDS];
+        for (int first = 0; first < entries; first += SEGMENT_ODDS) {
+            int length = Math.min(SEGMENT_ODDS, entries - first);
+            Arrays.fill(segment, 0, length, (char) 0);
+            long low = 2L * first + 1;
+            long high = low + 2L * (length - 1);
+            for (int k = 0; k < basePrimeCount; k++) {
+                long p = basePrimes[k];
+                if (p * p > high) {
+                    break;
+                }
+                long start = Math.max(p * p, (low + p - 1) / p * p);
+                if ((start & 1) == 0) {
+                    start += p;
+                }
+                for (long m = start; m <= high; m += 2 * p) {
+                    int i = (int) ((m - low) >>> 1);
+                    if (segment[i] == 0) {
+                        segment[i] = (char) p;
+                    }
+                }
+            }
+            out.put(first, segment, 0, length);
+        }
+    }
+}
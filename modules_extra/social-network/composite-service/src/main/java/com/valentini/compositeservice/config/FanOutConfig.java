@@ -0,0 +1,23 @@
+package com.valentini.compositeservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Configuration
+public class FanOutConfig {
+
+    /**
+     * Configures the executor used to call the downstream services concurrently.
+     * Each call runs on its own virtual thread, so blocking on a slow service
+     * does not pin a platform thread.
+     *
+     * @return the configured ExecutorService
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService fanOutExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
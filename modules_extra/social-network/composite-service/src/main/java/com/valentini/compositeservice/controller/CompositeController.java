@@ -3,10 +3,14 @@ package com.valentini.compositeservice.controller;
 
 import com.valentini.compositeservice.model.User;
 import com.valentini.compositeservice.service.FileStorageService;
+import com.valentini.compositeservice.service.InteractionEventRelay;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.*;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
@@ -22,23 +26,44 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
 
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Slf4j
 @NoArgsConstructor
 @Controller
 public class CompositeController {
 
+    private static final int SEARCH_PAGE_SIZE = 10;
+    private static final int SUGGESTIONS_SIZE = 5;
+
     @Autowired
     private BCryptPasswordEncoder passwordEncoder;
     @Value("${application.api.key}")
     private String api_key;
     @Autowired
     private FileStorageService fileStorageService;
+    @Autowired
+    private InteractionEventRelay interactionEventRelay;
 
     @Value("${default-avatar-path}")
     private String defaultAvatarPath;
@@ -46,6 +71,21 @@ public class CompositeController {
     @Value("${default-post-image-path}")
     private String defaultPostImagePath;
 
+    @Autowired
+    private ExecutorService fanOutExecutor;
+
+    @Value("${fan-out.timeout-ms}")
+    private long fanOutTimeoutMs;
+
+    @Value("${feed.streaming.enabled}")
+    private boolean feedStreamingEnabled;
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
     private User retrieveLoggedUser() {
         RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
@@ -121,21 +161,146 @@ public class CompositeController {
 
     @GetMapping("/home")
     public String homePage(Model model) throws Exception {
-        User user = retrieveLoggedUser();
+        if (feedStreamingEnabled) {
+            // The model is exposed to the streaming handler as request attributes
+            return "forward:/home/stream";
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-API-Key", api_key);
 
+        // Build the GraphQL query
+        String query = "{ getPosts { id description user { id username avatarPath } comments { id user { id username avatarPath } content } likesCount imagePath } }";
+
+        // Fetch the feed while the logged user is resolved on the request thread
+        Future<List<Map<String, Object>>> postsFuture = fanOutExecutor.submit(() -> fetchPosts(query, "getPosts", headers));
+        User user = retrieveLoggedUser();
 
         // Add the username to the model to display it in the view
         model.addAttribute("user", user );
 
-        RestTemplate restTemplate = new RestTemplate();
+        List<Map<String,Object>> posts = await(postsFuture);
+        if (posts != null) {
+            if (!decorateWithLikes(posts, user.getUsername(), headers)) {
+                model.addAttribute("partialResults", true);
+            }
+            model.addAttribute("posts", posts);
+        }
+            // Return the view name (e.g., home.html)
+        return "home";
+    }
+
+    /**
+     * Renders the home page as a stream of chunks: the page shell is flushed as
+     * soon as the logged user is known, then every post is flushed as soon as its
+     * like status is available, while the following ones are still being fetched.
+     */
+    @GetMapping("/home/stream")
+    public ResponseEntity<StreamingResponseBody> streamHomePage(HttpServletRequest request, HttpServletResponse response) throws Exception {
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-API-Key", api_key);
 
         // Build the GraphQL query
         String query = "{ getPosts { id description user { id username avatarPath } comments { id user { id username avatarPath } content } likesCount imagePath } }";
 
+        Future<List<Map<String, Object>>> postsFuture = fanOutExecutor.submit(() -> fetchPosts(query, "getPosts", headers));
+        User user = retrieveLoggedUser();
+
+        WebContext context = new WebContext(JakartaServletWebApplication.buildApplication(request.getServletContext())
+                .buildExchange(request, response), request.getLocale());
+        context.setVariable(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+                new ThymeleafEvaluationContext(applicationContext, null));
+        context.setVariable("user", user);
+        context.setVariable("postCreationSuccess", request.getAttribute("postCreationSuccess"));
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+
+            // Page shell
+            writer.write("<!DOCTYPE html>\n<html lang=\"en\">\n");
+            templateEngine.process("home", Set.of("head"), context, writer);
+            writer.write("\n<body>\n");
+            templateEngine.process("home", Set.of("navbar"), context, writer);
+            writer.write("\n<div class=\"container\">\n");
+            templateEngine.process("home", Set.of("post-creation-success"), context, writer);
+            writer.flush();
+
+            boolean complete = true;
+            List<Map<String, Object>> posts = null;
+            try {
+                posts = await(postsFuture);
+            } catch (Exception e) {
+                log.warn("Error retrieving posts", e);
+                complete = false;
+            }
+
+            // Posts, in feed order, each one as soon as it is decorated
+            if (posts != null) {
+                List<Future<Boolean>> likes = submitLikeChecks(posts, user.getUsername(), headers);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fanOutTimeoutMs);
+                for (int i = 0; i < posts.size(); i++) {
+                    complete &= resolveLike(posts.get(i), likes.get(i), deadline);
+                    context.setVariable("posts", List.of(posts.get(i)));
+                    templateEngine.process("home", Set.of("post"), context, writer);
+                    writer.flush();
+                }
+            }
+
+            context.setVariable("partialResults", !complete);
+            templateEngine.process("home", Set.of("partial-results"), context, writer);
+            writer.write("\n</div>\n");
+            templateEngine.process("home", Set.of("script"), context, writer);
+            writer.write("\n</body>\n</html>\n");
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    /**
+     * Retrieves a list of posts from the post service.
+     *
+     * @param query the GraphQL query to send
+     * @param field the name of the query field holding the posts
+     * @param headers the headers to attach to the request
+     * @return the posts, or null if the field is missing
+     * @throws Exception in case of any error retrieving the data
+     */
+    private List<Map<String, Object>> fetchPosts(String query, String field, HttpHeaders headers) throws Exception {
+        return fetchPosts(query, Map.of(), field, headers);
+    }
+
+    /**
+     * Retrieves a list of posts from the post service using a parameterized query.
+     *
+     * @param query the GraphQL query to send
+     * @param variables the variables of the query
+     * @param field the name of the query field holding the posts
+     * @param headers the headers to attach to the request
+     * @return the posts, or null if the field is missing
+     * @throws Exception in case of any error retrieving the data
+     */
+    private List<Map<String, Object>> fetchPosts(String query, Map<String, Object> variables, String field, HttpHeaders headers) throws Exception {
+        return fetchList(query, variables, field, headers);
+    }
+
+    /**
+     * Retrieves a list field from the post service using a parameterized query.
+     *
+     * @param query the GraphQL query to send
+     * @param variables the variables of the query
+     * @param field the name of the query field holding the list
+     * @param headers the headers to attach to the request
+     * @return the list, or null if the field is missing
+     * @throws Exception in case of any error retrieving the data
+     */
+    private <T> List<T> fetchList(String query, Map<String, Object> variables, String field, HttpHeaders headers) throws Exception {
+        RestTemplate restTemplate = new RestTemplate();
+
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("query", query);
+        requestBody.put("variables", variables);
 
         HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
 
@@ -153,44 +318,196 @@ public class CompositeController {
             if (data == null) {
                 throw new Exception("Error retrieving data");
             }
-            List<Map<String,Object>> posts = (List<Map<String, Object>>) data.get("getPosts");
-
-            if (posts != null) {
-                for (Map<String,Object> post : posts) {
-                    // Build the GraphQL query
-                    query = "{ isPostLikedByUser(postId: \"" + post.get("id") + "\", username: \"" + user.getUsername()+ "\") }";
-                    requestBody = new HashMap<>();
-                    requestBody.put("query", query);
-                    request = new HttpEntity<>(requestBody, headers);
-                    response = restTemplate.postForEntity("http://interaction:7003/graphql", request, Map.class);
-                    if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                        responseBody = response.getBody();
-
-                        // Check for errors in the response
-                        if (responseBody.containsKey("errors")) {
-                            throw new Exception("Error retrieving data");
-                        }
-
-                        data = (Map<String, Object>) responseBody.get("data");
-                        if (data == null) {
-                            throw new Exception("Error retrieving data");
-                        }
-                        post.put("isLiked", data.get("isPostLikedByUser"));
-                    } else {
-                        throw new Exception("Error retrieving data");
-                    }
-                }
-                model.addAttribute("posts", posts);
-            }
+            return (List<T>) data.get(field);
         } else if (response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
             throw new BadCredentialsException("Invalid API Key");
         } else {
             throw new Exception("Error retrieving data");
         }
-            // Return the view name (e.g., home.html)
+    }
+
+    /**
+     * Tells the interaction service to forget the id cached for a username, so
+     * that a renamed user's old name stops resolving to them right away. Best
+     * effort: the cached entry expires on its own anyway.
+     *
+     * @param username the username that is no longer in use
+     * @param headers the headers to attach to the request
+     */
+    private void evictCachedUsername(String username, HttpHeaders headers) {
+        RestTemplate restTemplate = new RestTemplate();
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", "mutation EvictUsername($username: String!) { evictUsername(username: $username) }");
+        requestBody.put("variables", Map.of("username", username));
+
+        try {
+            restTemplate.postForEntity("http://interaction:7003/graphql", new HttpEntity<>(requestBody, headers), Map.class);
+        } catch (Exception e) {
+            log.warn("Unable to evict cached username {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * Checks with the interaction service whether a post is liked by a user.
+     *
+     * @param postId the id of the post
+     * @param username the username of the user
+     * @param headers the headers to attach to the request
+     * @return true if the post is liked by the user
+     * @throws Exception in case of any error retrieving the data
+     */
+    private Boolean fetchIsLiked(Object postId, String username, HttpHeaders headers) throws Exception {
+        RestTemplate restTemplate = new RestTemplate();
+
+        // Build the GraphQL query
+        String query = "{ isPostLikedByUser(postId: \"" + postId + "\", username: \"" + username + "\") }";
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", query);
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("http://interaction:7003/graphql", request, Map.class);
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            Map<String, Object> responseBody = response.getBody();
+
+            // Check for errors in the response
+            if (responseBody.containsKey("errors")) {
+                throw new Exception("Error retrieving data");
+            }
+
+            Map<String, Object> data = (Map<String, Object>) responseBody.get("data");
+            if (data == null) {
+                throw new Exception("Error retrieving data");
+            }
+            return (Boolean) data.get("isPostLikedByUser");
+        } else {
+            throw new Exception("Error retrieving data");
+        }
+    }
+
+    /**
+     * Decorates every post with the like status of the given user. The calls to
+     * the interaction service are issued concurrently and share a single deadline,
+     * so the overall wait is bounded by the slowest call rather than by their sum.
+     * Posts whose status could not be retrieved in time are rendered as not liked.
+     *
+     * @param posts the posts to decorate
+     * @param username the username of the logged user
+     * @param headers the headers to attach to the requests
+     * @return true if every post was decorated, false if some results are missing
+     */
+    private boolean decorateWithLikes(List<Map<String, Object>> posts, String username, HttpHeaders headers) {
+        List<Future<Boolean>> likes = submitLikeChecks(posts, username, headers);
+
+        boolean complete = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fanOutTimeoutMs);
+        for (int i = 0; i < posts.size(); i++) {
+            complete &= resolveLike(posts.get(i), likes.get(i), deadline);
+        }
+        return complete;
+    }
+
+    private List<Future<Boolean>> submitLikeChecks(List<Map<String, Object>> posts, String username, HttpHeaders headers) {
+        List<Future<Boolean>> likes = new ArrayList<>(posts.size());
+        for (Map<String, Object> post : posts) {
+            Object postId = post.get("id");
+            likes.add(fanOutExecutor.submit(() -> fetchIsLiked(postId, username, headers)));
+        }
+        return likes;
+    }
+
+    /**
+     * Waits until the deadline for the like status of a post and stores it in the post.
+     *
+     * @return true if the status was retrieved, false if the post is rendered as not liked
+     */
+    private boolean resolveLike(Map<String, Object> post, Future<Boolean> like, long deadline) {
+        boolean resolved = false;
+        Boolean isLiked = false;
+        try {
+            isLiked = Boolean.TRUE.equals(like.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            resolved = true;
+        } catch (TimeoutException e) {
+            like.cancel(true);
+            log.warn("Timed out retrieving like status for post {}", post.get("id"));
+        } catch (ExecutionException e) {
+            log.warn("Error retrieving like status for post {}", post.get("id"), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            like.cancel(true);
+        }
+        post.put("isLiked", isLiked);
+        return resolved;
+    }
+
+    /**
+     * Waits for a downstream call issued on the fan-out executor, rethrowing its failure.
+     *
+     * @param future the pending call
+     * @return the result of the call
+     * @throws Exception if the call failed or did not complete within the fan-out timeout
+     */
+    private <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get(fanOutTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new Exception("Timed out retrieving data");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @GetMapping("/search")
+    public String search(@RequestParam(defaultValue = "") String q, @RequestParam(defaultValue = "0") int page, Model model) throws Exception {
+        if (q.isBlank()) {
+            return "redirect:/home";
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-API-Key", api_key);
+
+        // Build the GraphQL query
+        String query = "query SearchPosts($query: String!, $page: Int, $size: Int) { searchPosts(query: $query, page: $page, size: $size) { id description user { id username avatarPath } comments { id user { id username avatarPath } content } likesCount imagePath } }";
+        Map<String, Object> variables = Map.of("query", q, "page", Math.max(0, page), "size", SEARCH_PAGE_SIZE);
+
+        Future<List<Map<String, Object>>> postsFuture = fanOutExecutor.submit(() -> fetchPosts(query, variables, "searchPosts", headers));
+        User user = retrieveLoggedUser();
+        model.addAttribute("user", user);
+        model.addAttribute("searchQuery", q);
+        model.addAttribute("page", Math.max(0, page));
+
+        List<Map<String,Object>> posts = await(postsFuture);
+        if (posts != null) {
+            if (!decorateWithLikes(posts, user.getUsername(), headers)) {
+                model.addAttribute("partialResults", true);
+            }
+            model.addAttribute("posts", posts);
+            model.addAttribute("hasNextPage", posts.size() == SEARCH_PAGE_SIZE);
+        }
         return "home";
     }
 
+    @GetMapping("/search/suggestions")
+    @ResponseBody
+    public List<String> searchSuggestions(@RequestParam String q) throws Exception {
+        if (q.isBlank()) {
+            return List.of();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-API-Key", api_key);
+
+        // The index completes the last word with its most frequent terms
+        String query = "query SearchSuggestions($query: String!, $size: Int) { searchSuggestions(query: $query, size: $size) }";
+        List<String> suggestions = fetchList(query, Map.of("query", q, "size", SUGGESTIONS_SIZE), "searchSuggestions", headers);
+        return suggestions != null ? suggestions : List.of();
+    }
+
     @GetMapping("/createPost")
     public String showCreatePostForm(Model model) {
         return "createPost";  // Renders the Thymeleaf template for the create post form
@@ -384,6 +701,12 @@ public class CompositeController {
         }
     }
 
+    @GetMapping("/posts/events")
+    public SseEmitter postEvents() {
+        // Like and comment deltas pushed to the open pages
+        return interactionEventRelay.subscribe();
+    }
+
     @PostMapping("/posts/delete")
     public ResponseEntity<Void> deletePost(@RequestParam String postId, @RequestParam String imagePath) throws Exception {
         RestTemplate restTemplate = new RestTemplate();
@@ -559,11 +882,40 @@ public class CompositeController {
 
     @GetMapping("/user/{username}")
     public String showUserProfile(@PathVariable String username, Model model) throws Exception {
-        RestTemplate restTemplate = new RestTemplate();
         HttpHeaders headers = new HttpHeaders();
         headers.add("X-API-Key", api_key);
 
+        // Resolve the selected user while the logged user is resolved on the request thread
+        Future<User> selectedUserFuture = fanOutExecutor.submit(() -> fetchUserByUsername(username, headers));
         User user = retrieveLoggedUser();
+        User selectedUser = await(selectedUserFuture);
+
+        model.addAttribute("currentUser", user);
+        model.addAttribute("selectedUser", selectedUser);
+
+        // Build the GraphQL query
+        String query = "{ getPostsByUserId(userId: \"" + selectedUser.getId() + "\") { id description user { id username avatarPath } comments { id user { id username avatarPath } content } likesCount imagePath } }";
+
+        List<Map<String,Object>> posts = fetchPosts(query, "getPostsByUserId", headers);
+        if (posts != null) {
+            if (!decorateWithLikes(posts, user.getUsername(), headers)) {
+                model.addAttribute("partialResults", true);
+            }
+            model.addAttribute("posts", posts);
+        }
+
+        return "userProfile";
+    }
+
+    /**
+     * Retrieves the public profile of a user from the user service.
+     *
+     * @param username the username of the user
+     * @param headers the headers to attach to the request
+     * @return the user, without password
+     */
+    private User fetchUserByUsername(String username, HttpHeaders headers) {
+        RestTemplate restTemplate = new RestTemplate();
 
         // Build the GraphQL query
         String query = "{ getUserByUsername(username: \"" + username + "\") { id username email avatarPath } }";
@@ -596,67 +948,7 @@ public class CompositeController {
             selectedUser.setUsername((String) userData.get("username"));
             selectedUser.setEmail((String) userData.get("email"));
             selectedUser.setAvatarPath((String) userData.get("avatarPath"));
-
-            model.addAttribute("currentUser", user);
-            model.addAttribute("selectedUser", selectedUser);
-
-            // Build the GraphQL query
-            query = "{ getPostsByUserId(userId: \"" + selectedUser.getId() + "\") { id description user { id username avatarPath } comments { id user { id username avatarPath } content } likesCount imagePath } }";
-
-            requestBody = new HashMap<>();
-            requestBody.put("query", query);
-            request = new HttpEntity<>(requestBody, headers);
-            response = restTemplate.postForEntity("http://post:7002/graphql", request, Map.class);
-
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                responseBody = response.getBody();
-
-                // Check for errors in the response
-                if (responseBody.containsKey("errors")) {
-                    throw new RuntimeException("Error retrieving data");
-                }
-
-                data = (Map<String, Object>) responseBody.get("data");
-                if (data == null) {
-                    throw new RuntimeException("Error retrieving data");
-                }
-                List<Map<String,Object>> posts = (List<Map<String, Object>>) data.get("getPostsByUserId");
-
-                if (posts != null) {
-                    for (Map<String,Object> post : posts) {
-                        // Build the GraphQL query
-                        query = "{ isPostLikedByUser(postId: \"" + post.get("id") + "\", username: \"" + user.getUsername()+ "\") }";
-                        requestBody = new HashMap<>();
-                        requestBody.put("query", query);
-                        request = new HttpEntity<>(requestBody, headers);
-                        response = restTemplate.postForEntity("http://interaction:7003/graphql", request, Map.class);
-                        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                            responseBody = response.getBody();
-
-                            // Check for errors in the response
-                            if (responseBody.containsKey("errors")) {
-                                throw new RuntimeException("Error retrieving data");
-                            }
-
-                            data = (Map<String, Object>) responseBody.get("data");
-                            if (data == null) {
-                                throw new RuntimeException("Error retrieving data");
-                            }
-                            post.put("isLiked", data.get("isPostLikedByUser"));
-                        } else {
-                            throw new RuntimeException("Error retrieving data");
-                        }
-                    }
-                    model.addAttribute("posts", posts);
-                }
-            } else if (response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
-                throw new BadCredentialsException("Invalid API Key");
-            } else {
-                throw new RuntimeException("Error retrieving data");
-            }
-
-            return "userProfile";
-
+            return selectedUser;
         } else if (response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
             throw new BadCredentialsException("Invalid API Key");
         } else {
@@ -690,6 +982,7 @@ public class CompositeController {
         // Fetch the logged-in user
 
         // Update basic user information
+        String previousUsername = currentUser.getUsername();
         currentUser.setUsername(user.getUsername());
         currentUser.setEmail(user.getEmail());
 
@@ -772,6 +1065,9 @@ public class CompositeController {
                 }
             }
             updateLoggedUser(currentUser);
+            if (!previousUsername.equals(currentUser.getUsername())) {
+                evictCachedUsername(previousUsername, headers);
+            }
             model.addAttribute("successMessage", "Profile updated successfully.");
             model.addAttribute("user", ((Map<String, Object>) responseBody.get("data")).get("updateUser"));
             return "userUpdated";
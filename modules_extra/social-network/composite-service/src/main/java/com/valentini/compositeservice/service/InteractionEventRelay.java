@@ -0,0 +1,111 @@
+package com.valentini.compositeservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.json.JsonParser;
+import org.springframework.boot.json.JsonParserFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a single subscription to the interaction service's interactionEvents
+ * and relays every like and comment delta to the browsers connected through
+ * server-sent events, so that open pages update without being reloaded.
+ */
+@Slf4j
+@Service
+public class InteractionEventRelay {
+
+    private static final String SUBSCRIPTION = "{\"query\": \"subscription { interactionEvents { type postId userId likesDelta commentId comment { id content user { id username avatarPath } } } }\"}";
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final JsonParser jsonParser = JsonParserFactory.getJsonParser();
+
+    @Value("${application.api.key}")
+    private String api_key;
+
+    @Value("${interaction-events.emitter-timeout-ms}")
+    private long emitterTimeoutMs;
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread.ofVirtual().name("interaction-event-relay").start(this::relay);
+    }
+
+    private void relay() {
+        while (!Thread.currentThread().isInterrupted()) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://interaction:7003/graphql"))
+                    .header("X-API-Key", api_key)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(SUBSCRIPTION))
+                    .build();
+            try {
+                HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+                if (response.statusCode() == 200) {
+                    log.info("Subscribed to interaction events");
+                    try (Stream<String> lines = response.body()) {
+                        lines.filter(line -> line.startsWith("data:"))
+                                .forEach(line -> broadcast(line.substring("data:".length()).trim()));
+                    }
+                } else {
+                    log.warn("Interaction events subscription rejected: {}", response.statusCode());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Interaction events subscription failed: {}", e.getMessage());
+            }
+
+            try {
+                Thread.sleep(RECONNECT_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void broadcast(String payload) {
+        if (payload.isEmpty()) {
+            return;
+        }
+        Map<String, Object> message = jsonParser.parseMap(payload);
+        Map<String, Object> data = (Map<String, Object>) message.get("data");
+        if (data == null || data.get("interactionEvents") == null) {
+            return;
+        }
+        Object event = data.get("interactionEvents");
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event().name("interaction").data(event));
+            } catch (Exception e) {
+                // The browser went away, the callbacks remove the emitter
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.valentini.interactionservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class InteractionEvent {
+
+    public enum Type { LIKED, UNLIKED, COMMENT_ADDED, COMMENT_DELETED }
+
+    private Type type;
+    private Long postId;
+    private Long userId;
+    private Integer likesDelta;
+    private Long commentId;
+    private Comment comment;
+
+    public static InteractionEvent liked(Long postId, Long userId) {
+        return new InteractionEvent(Type.LIKED, postId, userId, 1, null, null);
+    }
+
+    public static InteractionEvent unliked(Long postId, Long userId) {
+        return new InteractionEvent(Type.UNLIKED, postId, userId, -1, null, null);
+    }
+
+    public static InteractionEvent commentAdded(Comment comment) {
+        return new InteractionEvent(Type.COMMENT_ADDED, comment.getPostId(), comment.getUserId(), 0, comment.getId(), comment);
+    }
+
+    public static InteractionEvent commentDeleted(Comment comment) {
+        return new InteractionEvent(Type.COMMENT_DELETED, comment.getPostId(), comment.getUserId(), 0, comment.getId(), null);
+    }
+}
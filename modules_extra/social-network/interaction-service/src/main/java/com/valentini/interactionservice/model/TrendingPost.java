@@ -0,0 +1,11 @@
+package com.valentini.interactionservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class TrendingPost {
+    private Long postId;
+    private Long score;
+}
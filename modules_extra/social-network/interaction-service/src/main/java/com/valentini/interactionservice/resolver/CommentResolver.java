@@ -3,29 +3,45 @@ package com.valentini.interactionservice.resolver;
 import com.valentini.interactionservice.exception.BadCredentialsException;
 import com.valentini.interactionservice.exception.UserNotFoundException;
 import com.valentini.interactionservice.model.Comment;
+import com.valentini.interactionservice.model.InteractionEvent;
 import com.valentini.interactionservice.model.User;
 import com.valentini.interactionservice.repository.CommentRepository;
+import com.valentini.interactionservice.service.InteractionEventPublisher;
+import com.valentini.interactionservice.service.TrendingAggregator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.http.*;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
 
 import java.util.HashMap;
 import java.util.Map;
 
+@Slf4j
 @Controller
 public class CommentResolver {
     private final CommentRepository commentRepository;
+    private final TrendingAggregator trendingAggregator;
+    private final InteractionEventPublisher eventPublisher;
 
     @Value("${application.api.key}")
     private String api_key;
 
-    public CommentResolver(CommentRepository commentRepository) {
+    public CommentResolver(CommentRepository commentRepository, TrendingAggregator trendingAggregator, InteractionEventPublisher eventPublisher) {
         this.commentRepository = commentRepository;
+        this.trendingAggregator = trendingAggregator;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @QueryMapping
+    public Iterable<Comment> getComments() {
+        return commentRepository.findAll();
     }
 
     @QueryMapping
@@ -39,15 +55,57 @@ public class CommentResolver {
         comment.setPostId(postId);
         comment.setUserId(userId);
         comment.setContent(content);
-        return commentRepository.save(comment);
+        Comment saved = commentRepository.save(comment);
+        trendingAggregator.recordComment(postId);
+        eventPublisher.publish(InteractionEvent.commentAdded(saved));
+        updateSearchIndex("mutation IndexComment($id: ID!, $postId: ID!, $content: String!) { indexComment(id: $id, postId: $postId, content: $content) }",
+                Map.of("id", saved.getId(), "postId", postId, "content", content));
+        return saved;
     }
 
     @MutationMapping
     public Boolean deleteComment(@Argument Long id) {
-        commentRepository.deleteById(id);
+        commentRepository.findById(id).ifPresent(comment -> {
+            commentRepository.delete(comment);
+            eventPublisher.publish(InteractionEvent.commentDeleted(comment));
+        });
+        updateSearchIndex("mutation UnindexComment($id: ID!) { unindexComment(id: $id) }", Map.of("id", id));
         return true;
     }
 
+    @SubscriptionMapping
+    public Flux<InteractionEvent> interactionEvents() {
+        return eventPublisher.events();
+    }
+
+    /**
+     * Forwards a comment mutation to the search index of the post service.
+     * A failure is only logged: the comment is stored anyway, and the post
+     * service picks it up the next time it loads every comment, at its startup.
+     */
+    private void updateSearchIndex(String mutation, Map<String, Object> variables) {
+        RestTemplate restTemplate = new RestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("X-API-Key", api_key);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", mutation);
+        requestBody.put("variables", variables);
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+
+        try {
+            ResponseEntity<Map> response = restTemplate.postForEntity("http://post:7002/graphql", request, Map.class);
+            if (response.getBody() == null || response.getBody().containsKey("errors")) {
+                log.warn("Error updating search index: {}", response.getBody());
+            }
+        } catch (Exception e) {
+            log.warn("Error updating search index: {}", e.getMessage());
+        }
+    }
+
     @SchemaMapping
     public User user(Comment comment) {
         RestTemplate restTemplate = new RestTemplate();
@@ -0,0 +1,83 @@
+package com.valentini.interactionservice.service;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch over long keys. Estimates never undercount and overcount by
+ * at most a small fraction of the total, using a fixed amount of memory no
+ * matter how many distinct keys are seen. Sketches with the same shape can be
+ * added to and subtracted from each other, which is what makes them usable as
+ * buckets of a sliding window. Not thread-safe.
+ */
+class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x27D4EB2F165667C5L, 0x94D049BB133111EBL
+    };
+
+    private final int depth;
+    private final int mask;
+    private final long[][] counts;
+
+    CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("depth must be between 1 and " + SEEDS.length);
+        }
+        if (width < 1 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("width must be a power of two");
+        }
+        this.depth = depth;
+        this.mask = width - 1;
+        this.counts = new long[depth][width];
+    }
+
+    void add(long key, long count) {
+        for (int row = 0; row < depth; row++) {
+            counts[row][index(key, row)] += count;
+        }
+    }
+
+    long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row][index(key, row)]);
+        }
+        return min;
+    }
+
+    void merge(CountMinSketch other) {
+        for (int row = 0; row < depth; row++) {
+            long[] target = counts[row];
+            long[] source = other.counts[row];
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    void subtract(CountMinSketch other) {
+        for (int row = 0; row < depth; row++) {
+            long[] target = counts[row];
+            long[] source = other.counts[row];
+            for (int i = 0; i < target.length; i++) {
+                target[i] -= source[i];
+            }
+        }
+    }
+
+    void clear() {
+        for (long[] row : counts) {
+            Arrays.fill(row, 0L);
+        }
+    }
+
+    private int index(long key, int row) {
+        // SplitMix64 finalizer, seeded per row
+        long h = key ^ SEEDS[row];
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        h = h ^ (h >>> 31);
+        return (int) h & mask;
+    }
+}
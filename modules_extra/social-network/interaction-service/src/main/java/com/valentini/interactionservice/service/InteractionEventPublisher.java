@@ -0,0 +1,26 @@
+package com.valentini.interactionservice.service;
+
+import com.valentini.interactionservice.model.InteractionEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Broadcasts like and comment deltas to the subscribers of interactionEvents.
+ * Events are not buffered: a subscriber only sees what happens while it is
+ * connected, and a slow subscriber drops events instead of slowing down writes.
+ */
+@Service
+public class InteractionEventPublisher {
+
+    private final Sinks.Many<InteractionEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    public synchronized void publish(InteractionEvent event) {
+        // Having no subscriber is not an error, the event is simply dropped
+        sink.tryEmitNext(event);
+    }
+
+    public Flux<InteractionEvent> events() {
+        return sink.asFlux();
+    }
+}
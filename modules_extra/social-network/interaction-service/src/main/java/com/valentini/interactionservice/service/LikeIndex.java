@@ -0,0 +1,63 @@
+package com.valentini.interactionservice.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.valentini.interactionservice.model.Like;
+import com.valentini.interactionservice.repository.LikeRepository;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * In-memory index of the posts liked by each user, stored as one compressed
+ * bitmap of post ids per user. A user's bitmap is loaded from the database the
+ * first time it is needed and is then kept up to date by likePost/unlikePost,
+ * so liked checks no longer hit the database. Writes must go through this
+ * service instance for the index to stay consistent. At most max-users
+ * bitmaps are kept, and users idle for expire-after-access are dropped and
+ * reloaded on their next check.
+ */
+@Service
+public class LikeIndex {
+
+    private final LoadingCache<Long, Roaring64Bitmap> likedPostsByUser;
+
+    public LikeIndex(LikeRepository likeRepository,
+                     @Value("${like-index.max-users}") long maxUsers,
+                     @Value("${like-index.expire-after-access-seconds}") long expireAfterAccessSeconds) {
+        this.likedPostsByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(Duration.ofSeconds(expireAfterAccessSeconds))
+                .build(userId -> {
+                    Roaring64Bitmap bitmap = new Roaring64Bitmap();
+                    for (Like like : likeRepository.findByUserId(userId)) {
+                        bitmap.addLong(like.getPostId());
+                    }
+                    bitmap.runOptimize();
+                    return bitmap;
+                });
+    }
+
+    public boolean isLiked(Long postId, Long userId) {
+        Roaring64Bitmap likedPosts = likedPostsByUser.get(userId);
+        synchronized (likedPosts) {
+            return likedPosts.contains(postId);
+        }
+    }
+
+    public void addLike(Long postId, Long userId) {
+        Roaring64Bitmap likedPosts = likedPostsByUser.get(userId);
+        synchronized (likedPosts) {
+            likedPosts.addLong(postId);
+        }
+    }
+
+    public void removeLike(Long postId, Long userId) {
+        Roaring64Bitmap likedPosts = likedPostsByUser.get(userId);
+        synchronized (likedPosts) {
+            likedPosts.removeLong(postId);
+        }
+    }
+}
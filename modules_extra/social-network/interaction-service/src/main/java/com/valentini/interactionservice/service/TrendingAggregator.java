@@ -0,0 +1,141 @@
+package com.valentini.interactionservice.service;
+
+import com.valentini.interactionservice.model.TrendingPost;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming aggregator of recent likes and comments. Events are counted in a
+ * ring of time buckets, each one a Count-Min sketch, while a running sketch
+ * holds the sum of the buckets still inside the window. A bounded set of
+ * candidate posts is kept ranked by their windowed estimate, and an immutable
+ * top-N snapshot is republished after every change, so reads cost nothing
+ * more than returning that snapshot.
+ * Unlikes and comment deletions are not subtracted: trending reflects recent
+ * activity, not the current totals.
+ */
+@Service
+public class TrendingAggregator {
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+
+    private final long bucketMillis;
+    private final int topK;
+    private final long likeWeight;
+    private final long commentWeight;
+
+    private final CountMinSketch[] buckets;
+    private final CountMinSketch window = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final Map<Long, Long> candidates = new HashMap<>();
+    private long currentBucket;
+
+    private volatile List<TrendingPost> snapshot = List.of();
+
+    public TrendingAggregator(@Value("${trending.bucket-seconds}") long bucketSeconds,
+                              @Value("${trending.buckets}") int bucketCount,
+                              @Value("${trending.top-k}") int topK,
+                              @Value("${trending.like-weight}") long likeWeight,
+                              @Value("${trending.comment-weight}") long commentWeight) {
+        this.bucketMillis = bucketSeconds * 1000;
+        this.topK = topK;
+        this.likeWeight = likeWeight;
+        this.commentWeight = commentWeight;
+        this.buckets = new CountMinSketch[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        }
+        this.currentBucket = System.currentTimeMillis() / bucketMillis;
+    }
+
+    public void recordLike(Long postId) {
+        record(postId, likeWeight);
+    }
+
+    public void recordComment(Long postId) {
+        record(postId, commentWeight);
+    }
+
+    /**
+     * Returns the current trending posts, highest score first.
+     *
+     * @param limit the maximum number of posts to return
+     * @return the trending posts
+     */
+    public List<TrendingPost> top(int limit) {
+        List<TrendingPost> current = snapshot;
+        return limit >= current.size() ? current : current.subList(0, Math.max(0, limit));
+    }
+
+    /**
+     * Expires old buckets even when no events arrive.
+     */
+    @Scheduled(fixedRateString = "${trending.bucket-seconds}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void tick() {
+        if (advance(System.currentTimeMillis())) {
+            publish();
+        }
+    }
+
+    private synchronized void record(Long postId, long weight) {
+        advance(System.currentTimeMillis());
+        buckets[(int) (currentBucket % buckets.length)].add(postId, weight);
+        window.add(postId, weight);
+
+        long estimate = window.estimate(postId);
+        if (candidates.containsKey(postId) || candidates.size() < topK) {
+            candidates.put(postId, estimate);
+        } else {
+            // Space for a new candidate is made by evicting the weakest one
+            Map.Entry<Long, Long> weakest = Collections.min(candidates.entrySet(), Map.Entry.comparingByValue());
+            if (estimate > weakest.getValue()) {
+                candidates.remove(weakest.getKey());
+                candidates.put(postId, estimate);
+            }
+        }
+        publish();
+    }
+
+    /**
+     * Moves the window forward, clearing the buckets that fell out of it.
+     *
+     * @return true if at least one bucket expired
+     */
+    private boolean advance(long now) {
+        long bucket = now / bucketMillis;
+        if (bucket <= currentBucket) {
+            return false;
+        }
+        long expired = Math.min(bucket - currentBucket, buckets.length);
+        for (long i = 1; i <= expired; i++) {
+            CountMinSketch old = buckets[(int) ((currentBucket + i) % buckets.length)];
+            window.subtract(old);
+            old.clear();
+        }
+        currentBucket = bucket;
+
+        // Candidates are re-estimated against what is left in the window
+        Iterator<Map.Entry<Long, Long>> iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> candidate = iterator.next();
+            long estimate = window.estimate(candidate.getKey());
+            if (estimate <= 0) {
+                iterator.remove();
+            } else {
+                candidate.setValue(estimate);
+            }
+        }
+        return true;
+    }
+
+    private void publish() {
+        snapshot = candidates.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .map(entry -> new TrendingPost(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+}
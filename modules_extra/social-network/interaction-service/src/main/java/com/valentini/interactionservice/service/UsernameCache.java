@@ -0,0 +1,88 @@
+package com.valentini.interactionservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.valentini.interactionservice.exception.BadCredentialsException;
+import com.valentini.interactionservice.exception.UserNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local cache of username to user id mappings, so that the user service is
+ * only queried the first time a username is seen. The cache is bounded by
+ * max-size and Caffeine picks the entries to drop. A renamed user's old name is
+ * evicted by the composite service through evictUsername; entries also expire
+ * after a configurable time for renames that bypass it.
+ */
+@Service
+public class UsernameCache {
+
+    private final Cache<String, Long> ids;
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @Value("${application.api.key}")
+    private String api_key;
+
+    public UsernameCache(@Value("${username-cache.ttl-seconds}") long ttlSeconds,
+                         @Value("${username-cache.max-size}") long maxSize) {
+        this.ids = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public Long resolveId(String username) {
+        return ids.get(username, this::fetchId);
+    }
+
+    public void evict(String username) {
+        ids.invalidate(username);
+    }
+
+    private Long fetchId(String username) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-API-Key", api_key);
+
+        // Build the GraphQL query
+        String query = "{ getUserByUsername(username: \"" + username + "\") { id username } }";
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", query);
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("http://user:7001/graphql", request, Map.class);
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            Map<String, Object> responseBody = response.getBody();
+
+            // Check for errors in the response
+            if (responseBody.containsKey("errors")) {
+                throw new RuntimeException("Error retrieving data");
+            }
+
+            Map<String, Object> data = (Map<String, Object>) responseBody.get("data");
+            if (data == null) {
+                throw new RuntimeException("Error retrieving data");
+            }
+            if (data.get("getUserByUsername") == null) {
+                throw new RuntimeException("Error retrieving data");
+            }
+            Map<String, Object> userData = (Map<String, Object>) data.get("getUserByUsername");
+            return Long.parseLong(userData.get("id").toString());
+        } else if (response.getStatusCode() == HttpStatus.UNAUTHORIZED) {
+            throw new BadCredentialsException("Invalid API Key");
+        } else {
+            throw new UserNotFoundException(username);
+        }
+    }
+}
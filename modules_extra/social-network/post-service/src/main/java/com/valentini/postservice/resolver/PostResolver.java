@@ -5,6 +5,7 @@ import com.valentini.postservice.model.Comment;
 import com.valentini.postservice.model.Post;
 import com.valentini.postservice.model.User;
 import com.valentini.postservice.repository.PostRepository;
+import com.valentini.postservice.service.PostSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
@@ -20,16 +21,19 @@ import org.springframework.web.client.RestTemplate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Controller
 public class PostResolver {
     private final PostRepository postRepository;
+    private final PostSearchIndex postSearchIndex;
 
     @Value("${application.api.key}")
     private String api_key;
 
-    public PostResolver(PostRepository postRepository) {
+    public PostResolver(PostRepository postRepository, PostSearchIndex postSearchIndex) {
         this.postRepository = postRepository;
+        this.postSearchIndex = postSearchIndex;
     }
 
     @QueryMapping
@@ -48,12 +52,43 @@ public class PostResolver {
         post.setDescription(description);
         post.setUserId(userId);
         post.setImagePath(imagePath);
-        return postRepository.save(post);
+        Post saved = postRepository.save(post);
+        postSearchIndex.indexPost(saved.getId(), saved.getDescription());
+        return saved;
     }
 
     @MutationMapping
     public Boolean deletePost(@Argument Long id) {
         postRepository.deleteById(id);
+        postSearchIndex.removePost(id);
+        return true;
+    }
+
+    @QueryMapping
+    public List<Post> searchPosts(@Argument String query, @Argument int page, @Argument int size) {
+        List<Long> ids = postSearchIndex.search(query, page, size);
+        Map<Long, Post> posts = new HashMap<>();
+        for (Post post : postRepository.findAllById(ids)) {
+            posts.put(post.getId(), post);
+        }
+        // Keep the ranking of the index
+        return ids.stream().map(posts::get).filter(Objects::nonNull).toList();
+    }
+
+    @QueryMapping
+    public List<String> searchSuggestions(@Argument String query, @Argument int size) {
+        return postSearchIndex.suggest(query, size);
+    }
+
+    @MutationMapping
+    public Boolean indexComment(@Argument Long id, @Argument Long postId, @Argument String content) {
+        postSearchIndex.indexComment(id, postId, content);
+        return true;
+    }
+
+    @MutationMapping
+    public Boolean unindexComment(@Argument Long id) {
+        postSearchIndex.removeComment(id);
         return true;
     }
 
@@ -0,0 +1,320 @@
+package com.valentini.postservice.service;
+
+import com.valentini.postservice.model.Post;
+import com.valentini.postservice.repository.PostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Incremental inverted index over post descriptions and comment contents.
+ * Terms are kept in a sorted map, so the last word of a query can be matched
+ * as a prefix (type-ahead) with a range lookup instead of a table scan.
+ * A prefix expands to its most frequent completions, which also back the
+ * search suggestions. Matches in the description weigh more than matches in
+ * the comments, and rare terms weigh more than common ones.
+ */
+@Slf4j
+@Service
+public class PostSearchIndex {
+
+    private static final int DESCRIPTION_WEIGHT = 2;
+    private static final int COMMENT_WEIGHT = 1;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final long INITIAL_COMMENT_LOAD_BACKOFF_MS = 1000;
+    private static final long MAX_COMMENT_LOAD_BACKOFF_MS = 60000;
+
+    private record IndexedComment(Long postId, List<String> terms) {}
+
+    private final PostRepository postRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // term -> (post id -> accumulated weight)
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, List<String>> descriptionTerms = new HashMap<>();
+    private final Map<Long, IndexedComment> commentTerms = new HashMap<>();
+    private final Map<Long, Set<Long>> commentsByPost = new HashMap<>();
+
+    @Value("${application.api.key}")
+    private String api_key;
+
+    public PostSearchIndex(PostRepository postRepository) {
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * Builds the index from the stored posts, then loads the comments held by
+     * the interaction service in the background. The interaction service
+     * usually starts after this one, so the load is retried with backoff
+     * until it succeeds; comments added meanwhile are indexed as they arrive.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        for (Post post : postRepository.findAll()) {
+            indexPost(post.getId(), post.getDescription());
+        }
+        log.info("Search index built with {} terms", postings.size());
+
+        Thread loader = new Thread(this::loadComments, "search-index-comments");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void loadComments() {
+        long backoff = INITIAL_COMMENT_LOAD_BACKOFF_MS;
+        while (true) {
+            try {
+                List<Map<String, Object>> comments = fetchComments();
+                for (Map<String, Object> comment : comments) {
+                    indexComment(Long.valueOf(comment.get("id").toString()),
+                            Long.valueOf(comment.get("postId").toString()),
+                            (String) comment.get("content"));
+                }
+                log.info("Indexed {} existing comments", comments.size());
+                return;
+            } catch (Exception e) {
+                log.warn("Unable to index existing comments, retrying in {} ms: {}", backoff, e.getMessage());
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_COMMENT_LOAD_BACKOFF_MS);
+        }
+    }
+
+    public void indexPost(Long postId, String description) {
+        List<String> terms = tokenize(description);
+        lock.writeLock().lock();
+        try {
+            removeTerms(postId, descriptionTerms.remove(postId), DESCRIPTION_WEIGHT);
+            addTerms(postId, terms, DESCRIPTION_WEIGHT);
+            descriptionTerms.put(postId, terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePost(Long postId) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(postId, descriptionTerms.remove(postId), DESCRIPTION_WEIGHT);
+            Set<Long> commentIds = commentsByPost.remove(postId);
+            if (commentIds != null) {
+                for (Long commentId : commentIds) {
+                    IndexedComment comment = commentTerms.remove(commentId);
+                    removeTerms(postId, comment.terms(), COMMENT_WEIGHT);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void indexComment(Long commentId, Long postId, String content) {
+        List<String> terms = tokenize(content);
+        lock.writeLock().lock();
+        try {
+            removeCommentLocked(commentId);
+            addTerms(postId, terms, COMMENT_WEIGHT);
+            commentTerms.put(commentId, new IndexedComment(postId, terms));
+            commentsByPost.computeIfAbsent(postId, id -> new HashSet<>()).add(commentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeComment(Long commentId) {
+        lock.writeLock().lock();
+        try {
+            removeCommentLocked(commentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index. Every word of the query is matched exactly, except the
+     * last one which is matched as a prefix.
+     *
+     * @param query the text to search
+     * @param page the zero-based page number
+     * @param size the page size
+     * @return the ids of the matching posts, best match first
+     */
+    public List<Long> search(String query, int page, int size) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || page < 0 || size <= 0) {
+            return List.of();
+        }
+
+        Map<Long, Double> scores = new HashMap<>();
+        Map<Long, Integer> matchedTokens = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int postCount = Math.max(1, descriptionTerms.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                Collection<Map<Long, Integer>> matches = i == tokens.size() - 1
+                        ? completions(token, MAX_PREFIX_EXPANSIONS).stream().map(postings::get).toList()
+                        : postings.subMap(token, true, token, true).values();
+
+                Set<Long> matchedByToken = new HashSet<>();
+                for (Map<Long, Integer> posts : matches) {
+                    double idf = Math.log(1.0 + (double) postCount / posts.size());
+                    for (Map.Entry<Long, Integer> entry : posts.entrySet()) {
+                        scores.merge(entry.getKey(), entry.getValue() * idf, Double::sum);
+                        matchedByToken.add(entry.getKey());
+                    }
+                }
+                for (Long postId : matchedByToken) {
+                    matchedTokens.merge(postId, 1, Integer::sum);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Posts matching more query words come first, then the highest scores, then the newest
+        return scores.keySet().stream()
+                .sorted(Comparator.<Long>comparingInt(matchedTokens::get).reversed()
+                        .thenComparing(Comparator.<Long>comparingDouble(scores::get).reversed())
+                        .thenComparing(Comparator.<Long>reverseOrder()))
+                .skip((long) page * size)
+                .limit(size)
+                .toList();
+    }
+
+    /**
+     * Completes the last word of a query with the indexed terms it prefixes.
+     *
+     * @param query the text typed so far
+     * @param size the maximum number of suggestions
+     * @return the query with its last word completed, most frequent completion first
+     */
+    public List<String> suggest(String query, int size) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || size <= 0) {
+            return List.of();
+        }
+        String prefix = String.join(" ", tokens.subList(0, tokens.size() - 1));
+        List<String> completions;
+        lock.readLock().lock();
+        try {
+            completions = completions(tokens.get(tokens.size() - 1), size);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return completions.stream()
+                .map(term -> prefix.isEmpty() ? term : prefix + " " + term)
+                .toList();
+    }
+
+    /**
+     * Must be called holding the read lock.
+     *
+     * @return up to limit terms starting with prefix, found in the most posts first
+     */
+    private List<String> completions(String prefix, int limit) {
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet().stream()
+                .sorted(Comparator.<Map.Entry<String, Map<Long, Integer>>>comparingInt(entry -> entry.getValue().size()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private void removeCommentLocked(Long commentId) {
+        IndexedComment comment = commentTerms.remove(commentId);
+        if (comment != null) {
+            removeTerms(comment.postId(), comment.terms(), COMMENT_WEIGHT);
+            Set<Long> commentIds = commentsByPost.get(comment.postId());
+            if (commentIds != null && commentIds.remove(commentId) && commentIds.isEmpty()) {
+                commentsByPost.remove(comment.postId());
+            }
+        }
+    }
+
+    private void addTerms(Long postId, List<String> terms, int weight) {
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new HashMap<>()).merge(postId, weight, Integer::sum);
+        }
+    }
+
+    private void removeTerms(Long postId, List<String> terms, int weight) {
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> posts = postings.get(term);
+            if (posts == null) {
+                continue;
+            }
+            posts.computeIfPresent(postId, (id, w) -> w > weight ? w - weight : null);
+            if (posts.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>();
+        for (String term : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private List<Map<String, Object>> fetchComments() {
+        RestTemplate restTemplate = new RestTemplate();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.add("X-API-Key", api_key);
+
+        // Build the GraphQL query
+        String query = "{ getComments { id postId content } }";
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("query", query);
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+
+        ResponseEntity<Map> response = restTemplate.postForEntity("http://interaction:7003/graphql", request, Map.class);
+
+        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+            Map<String, Object> responseBody = response.getBody();
+
+            // Check for errors in the response
+            if (responseBody.containsKey("errors")) {
+                throw new RuntimeException("Error fetching comments");
+            }
+
+            Map<String, Object> data = (Map<String, Object>) responseBody.get("data");
+            if (data == null || data.get("getComments") == null) {
+                throw new RuntimeException("Error fetching comments");
+            }
+            return (List<Map<String, Object>>) data.get("getComments");
+        } else {
+            throw new RuntimeException("Error fetching comments");
+        }
+    }
+}